@@ -2,10 +2,21 @@ package searchengine;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import searchengine.services.LemmaService;
+
+import java.util.Map;
 
 @SpringBootApplication
 public class Application {
     public static void main(String[] args) {
-        SpringApplication.run(Application.class, args);
+        LemmaService.init();
+        SpringApplication application = new SpringApplication(Application.class);
+        application.setDefaultProperties(Map.of(
+                "spring.jpa.hibernate.ddl-auto", "none",
+                "spring.flyway.baseline-on-migrate", "true",
+                // схема, созданная до перехода на Flyway, получает версию 0, чтобы V1 досоздал недостающие таблицы
+                "spring.flyway.baseline-version", "0"
+        ));
+        application.run(args);
     }
 }
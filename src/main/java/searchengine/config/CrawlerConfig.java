@@ -0,0 +1,30 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "crawler-settings")
+public class CrawlerConfig {
+    private int fetchThreads = 64;
+    private int parseThreads = Runtime.getRuntime().availableProcessors();
+    private int storeThreads = 4;
+    private int writeGroupSize = 50;
+    private int queueCapacity = 256;
+    private int checkpointIntervalSeconds = 60;
+    private int quickIndexMaxDepth = 2;
+    private int quickIndexMaxPages = 500;
+    private int connectTimeoutMillis = 5000;
+    private int readTimeoutMillis = 10000;
+    private int maxBodySizeBytes = 5 * 1024 * 1024;
+    private int maxRetries = 3;
+    private long retryBaseDelayMillis = 1000;
+    private long retryMaxDelayMillis = 120000;
+    private int circuitBreakerFailureThreshold = 5;
+    private long circuitBreakerOpenMillis = 30000;
+    private int lemmaFlushThreshold = 10000;
+}
@@ -0,0 +1,27 @@
+package searchengine.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Включает в драйвере MySQL переписывание пакетов в многострочные INSERT, а при загрузке индекса
+ * через файл - разрешает LOAD DATA LOCAL INFILE.
+ */
+@Component
+@RequiredArgsConstructor
+public class DataSourceTuning implements BeanPostProcessor {
+    private final IndexWriterConfig indexWriterConfig;
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof HikariDataSource dataSource) {
+            dataSource.addDataSourceProperty("rewriteBatchedStatements", "true");
+            if (indexWriterConfig.isBulkLoad()) {
+                dataSource.addDataSourceProperty("allowLoadLocalInfile", "true");
+            }
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,28 @@
+package searchengine.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Map;
+
+/**
+ * При storage.type=memory отключает автоконфигурацию источника данных, JPA и Flyway,
+ * чтобы приложение запускалось без внешней базы данных.
+ */
+public class InMemoryStorageEnvironment implements EnvironmentPostProcessor {
+    private static final String EXCLUDED_AUTO_CONFIGURATIONS = String.join(",",
+            "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration",
+            "org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration",
+            "org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration",
+            "org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration");
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if ("memory".equals(environment.getProperty("storage.type"))) {
+            environment.getPropertySources().addLast(new MapPropertySource("inMemoryStorage",
+                    Map.of("spring.autoconfigure.exclude", EXCLUDED_AUTO_CONFIGURATIONS)));
+        }
+    }
+}
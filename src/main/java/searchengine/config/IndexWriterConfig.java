@@ -0,0 +1,22 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "index-writer-settings")
+public class IndexWriterConfig {
+    private int batchSize = 1000;
+    /**
+     * Загружать записи индекса через LOAD DATA LOCAL INFILE вместо пакетных INSERT
+     */
+    private boolean bulkLoad = false;
+    /**
+     * Каталог для временных файлов загрузки; по умолчанию системный каталог временных файлов
+     */
+    private String bulkLoadDirectory;
+}
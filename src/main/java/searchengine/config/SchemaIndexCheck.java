@@ -0,0 +1,95 @@
+package searchengine.config;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.log4j.Logger;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.services.IndexingService;
+
+import java.util.*;
+
+/**
+ * При старте сверяет индексы базы с путями доступа запросов репозиториев и сообщает о недостающих.
+ * Индекс считается подходящим, если требуемые столбцы являются его первыми столбцами в том же порядке.
+ * <p>
+ * Без уникальных ключей страниц, лемм и записей индекса upsert и проверки дубликатов молча плодят
+ * повторяющиеся строки, поэтому их отсутствие останавливает запуск приложения.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "storage.type", havingValue = "jpa", matchIfMissing = true)
+public class SchemaIndexCheck {
+    private static final Logger log = Logger.getLogger(IndexingService.class);
+    private static final String INDEX_COLUMNS_SQL = "select table_name, index_name, column_name, non_unique " +
+            "from information_schema.statistics where table_schema = database() " +
+            "order by table_name, index_name, seq_in_index";
+    private static final List<RequiredIndex> REQUIRED_INDEXES = List.of(
+            new RequiredIndex("site", List.of("url", "active"), false),
+            new RequiredIndex("page", List.of("site_id", "path"), true),
+            new RequiredIndex("lemma", List.of("lemma", "site_id"), true),
+            new RequiredIndex("lemma", List.of("site_id", "frequency"), false),
+            new RequiredIndex("lemma", List.of("frequency"), false),
+            new RequiredIndex("search_index", List.of("page_id", "lemma_id"), true),
+            new RequiredIndex("search_index", List.of("lemma_id", "page_id", "lemma_rank"), false),
+            new RequiredIndex("search_index", List.of("site_id"), false),
+            new RequiredIndex("page_content", List.of("site_id"), false),
+            new RequiredIndex("crawl_checkpoint", List.of("site_id"), false)
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @param unique требуется уникальный ключ ровно по этим столбцам, в любом порядке
+     */
+    private record RequiredIndex(String table, List<String> columns, boolean unique) {
+    }
+
+    private record IndexColumns(List<String> columns, boolean unique) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkIndexes() {
+        Map<String, Map<String, IndexColumns>> indexes = new HashMap<>();
+        try {
+            jdbcTemplate.query(INDEX_COLUMNS_SQL, resultSet -> {
+                boolean unique = !resultSet.getBoolean(4);
+                indexes.computeIfAbsent(resultSet.getString(1).toLowerCase(), table -> new HashMap<>())
+                        .computeIfAbsent(resultSet.getString(2), index -> new IndexColumns(new ArrayList<>(), unique))
+                        .columns().add(resultSet.getString(3).toLowerCase());
+            });
+        } catch (DataAccessException e) {
+            log.warn("Не удалось проверить индексы базы данных: " + e.getMessage());
+            return;
+        }
+
+        List<RequiredIndex> missingIndexes = REQUIRED_INDEXES.stream()
+                .filter(required -> indexes.getOrDefault(required.table(), Map.of()).values().stream()
+                        .noneMatch(index -> covers(index, required)))
+                .toList();
+
+        if (missingIndexes.isEmpty()) {
+            log.info("Все индексы базы данных на месте");
+            return;
+        }
+        missingIndexes.forEach(missing -> log.warn("Отсутствует " + (missing.unique() ? "уникальный ключ" : "индекс")
+                + " таблицы " + missing.table() + " по столбцам " + String.join(", ", missing.columns())
+                + (missing.unique() ? "" : ": запросы к ней будут читать всю таблицу")));
+
+        if (missingIndexes.stream().anyMatch(RequiredIndex::unique)) {
+            throw new IllegalStateException("В базе данных отсутствуют обязательные уникальные ключи");
+        }
+    }
+
+    private static boolean covers(IndexColumns index, RequiredIndex required) {
+        if (required.unique()) {
+            return index.unique() && index.columns().size() == required.columns().size()
+                    && index.columns().containsAll(required.columns());
+        }
+        return index.columns().size() >= required.columns().size()
+                && index.columns().subList(0, required.columns().size()).equals(required.columns());
+    }
+}
@@ -0,0 +1,34 @@
+package searchengine.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Схемой базы управляет Flyway. Если настройки приложения разрешают Hibernate менять схему самостоятельно,
+ * запуск останавливается, а не продолжается с молча переопределенным значением по умолчанию.
+ */
+public class SchemaManagementEnvironment implements EnvironmentPostProcessor {
+    private static final Set<String> ALLOWED_DDL_AUTO = Set.of("none", "validate");
+    private static final List<String> DDL_AUTO_PROPERTIES = List.of(
+            "spring.jpa.hibernate.ddl-auto",
+            "spring.jpa.properties.hibernate.hbm2ddl.auto");
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if ("memory".equals(environment.getProperty("storage.type"))) {
+            return;
+        }
+
+        for (String property : DDL_AUTO_PROPERTIES) {
+            String ddlAuto = environment.getProperty(property);
+            if (ddlAuto != null && !ALLOWED_DDL_AUTO.contains(ddlAuto.trim().toLowerCase())) {
+                throw new IllegalStateException("Схемой базы данных управляют миграции Flyway: " + property + "="
+                        + ddlAuto + " не поддерживается, допустимы значения none и validate");
+            }
+        }
+    }
+}
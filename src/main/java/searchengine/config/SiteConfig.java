@@ -3,9 +3,33 @@ package searchengine.config;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Setter
 @Getter
 public class SiteConfig {
     private String url;
     private String name;
+    private int bloomFilterExpectedUrls;
+    private double requestsPerSecond = 5.0;
+    private int maxConnections = 4;
+    private List<String> allowedQueryParameters = new ArrayList<>();
+    private int nearDuplicateDistance = 3;
+    private int maxDepth;
+    private int maxPages;
+    private int maxDurationMinutes;
+    private List<UrlPatternWeight> urlPatternWeights = new ArrayList<>();
+
+    /**
+     * Вызывается при привязке настроек, поэтому приложение не запустится с нулевой или отрицательной частотой
+     * запросов, при которой невозможно рассчитать паузу между запросами к хосту.
+     */
+    public void setRequestsPerSecond(double requestsPerSecond) {
+        if (!(requestsPerSecond > 0)) {
+            throw new IllegalArgumentException("Частота запросов к сайту должна быть больше нуля: "
+                    + requestsPerSecond);
+        }
+        this.requestsPerSecond = requestsPerSecond;
+    }
 }
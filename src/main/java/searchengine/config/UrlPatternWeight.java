@@ -0,0 +1,11 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class UrlPatternWeight {
+    private String pattern;
+    private double weight;
+}
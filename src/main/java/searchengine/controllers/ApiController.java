@@ -22,13 +22,21 @@ public class ApiController {
     }
 
     @GetMapping("/startIndexing")
-    public ResponseEntity<Response> startIndexing() {
-        return ResponseEntity.ok(indexingService.startIndexing());
+    public ResponseEntity<Response> startIndexing(@RequestParam(name = "incremental",
+            required = false, defaultValue = "false") boolean incremental,
+                                                  @RequestParam(name = "quick",
+                                                          required = false, defaultValue = "false") boolean quick) {
+        return ResponseEntity.ok(indexingService.startIndexing(incremental, quick));
+    }
+
+    @GetMapping("/resumeIndexing")
+    public ResponseEntity<Response> resumeIndexing() {
+        return ResponseEntity.ok(indexingService.resumeIndexing());
     }
 
     @GetMapping("/stopIndexing")
-    public ResponseEntity<Response> stopIndexing() {
-        return ResponseEntity.ok(indexingService.stopIndexing());
+    public ResponseEntity<Response> stopIndexing(@RequestParam(name = "site", required = false) String url) {
+        return ResponseEntity.ok(indexingService.stopIndexing(url));
     }
 
     @PostMapping("/indexPage")
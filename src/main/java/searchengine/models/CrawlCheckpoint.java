@@ -0,0 +1,33 @@
+package searchengine.models;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.util.Date;
+
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+public class CrawlCheckpoint {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(nullable = false)
+    private Integer id;
+
+    @OneToOne
+    @JoinColumn(name = "site_id", referencedColumnName = "id", nullable = false, unique = true)
+    private Site site;
+
+    @Lob
+    @Column(columnDefinition = "LONGBLOB", nullable = false)
+    private byte[] pendingUrls;
+
+    @Column(nullable = false)
+    private Integer pendingCount;
+
+    @Column(columnDefinition = "DATETIME", nullable = false)
+    private Date savedTime;
+}
@@ -7,6 +7,11 @@ import lombok.Setter;
 import javax.persistence.*;
 
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_lemma_lemma_site", columnNames = {"lemma", "site_id"}),
+        indexes = {
+                @Index(name = "idx_lemma_site_frequency", columnList = "site_id, frequency"),
+                @Index(name = "idx_lemma_frequency", columnList = "frequency")
+        })
 @Getter
 @Setter
 @NoArgsConstructor
@@ -28,4 +33,7 @@ public class Lemma {
 
     @Transient
     private Float rank;
+
+    @Transient
+    private int[] positions;
 }
@@ -9,10 +9,13 @@ import java.io.Serializable;
 import java.util.HashMap;
 
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_page_site_path", columnNames = {"site_id", "path"}))
 @Getter
 @Setter
 @NoArgsConstructor
 public class Page implements Serializable {
+    public static final int MAX_PATH_LENGTH = 512;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(nullable = false)
@@ -22,15 +25,38 @@ public class Page implements Serializable {
     @JoinColumn(name = "site_id", referencedColumnName = "id", nullable = false)
     private Site site;
 
-    @Column(columnDefinition = "TEXT", unique = true)
+    @Column(columnDefinition = "VARCHAR(" + MAX_PATH_LENGTH + ")", nullable = false)
     private String path;
 
     @Column(nullable = false)
     private Integer code;
 
-    @Column(columnDefinition = "MEDIUMTEXT")
+    @Column(columnDefinition = "TEXT")
+    private String title;
+
+    @Column(columnDefinition = "VARCHAR(255)")
+    private String etag;
+
+    @Column(columnDefinition = "VARCHAR(64)")
+    private String lastModified;
+
+    @Column(columnDefinition = "CHAR(32)")
+    private String contentHash;
+
+    private Long simHash;
+
+    @Column(columnDefinition = "TEXT")
+    private String duplicateOf;
+
+    @Transient
     private String context;
 
     @Transient
-    private HashMap<String, Integer> lemmas;
+    private String text;
+
+    /**
+     * Леммы страницы с позициями их вхождений в тексте
+     */
+    @Transient
+    private HashMap<String, int[]> lemmas;
 }
@@ -0,0 +1,29 @@
+package searchengine.models;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+
+@Entity
+@Table(indexes = @Index(name = "idx_page_content_site", columnList = "site_id"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class PageContent {
+    @Id
+    @Column(nullable = false)
+    private Integer pageId;
+
+    @Column(nullable = false)
+    private Integer siteId;
+
+    @Lob
+    @Column(columnDefinition = "MEDIUMBLOB")
+    private byte[] html;
+
+    @Lob
+    @Column(columnDefinition = "MEDIUMBLOB")
+    private byte[] text;
+}
@@ -7,6 +7,11 @@ import lombok.Setter;
 import javax.persistence.*;
 
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_search_index_page_lemma", columnNames = {"page_id", "lemma_id"}),
+        indexes = {
+                @Index(name = "idx_search_index_lemma_page", columnList = "lemma_id, page_id, lemma_rank"),
+                @Index(name = "idx_search_index_site", columnList = "site_id")
+        })
 @NoArgsConstructor
 @Getter
 @Setter
@@ -16,6 +21,9 @@ public class SearchIndex {
     @Column(nullable = false)
     private Integer id;
 
+    @Column(nullable = false)
+    private Integer siteId;
+
     @Column(nullable = false)
     private Integer pageId;
 
@@ -24,4 +32,11 @@ public class SearchIndex {
 
     @Column(nullable = false)
     private Float lemmaRank;
+
+    /**
+     * Позиции леммы на странице, закодированные {@link searchengine.utils.PositionCodec}
+     */
+    @Lob
+    @Column(columnDefinition = "BLOB")
+    private byte[] positions;
 }
@@ -11,6 +11,7 @@ import java.util.Date;
 import java.util.List;
 
 @Entity
+@Table(indexes = @Index(name = "idx_site_url_active", columnList = "url, active"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -20,6 +21,13 @@ public class Site implements Serializable {
     @Column(nullable = false)
     private Integer id;
 
+    /**
+     * Поиск идет только по активному поколению индекса сайта. Новое поколение строится рядом с активным
+     * и становится активным после успешного завершения обхода.
+     */
+    @Column(nullable = false)
+    private Boolean active = false;
+
     @Column(columnDefinition = "ENUM('INDEXING', 'INDEXED', 'FAILED')", nullable = false)
     @Enumerated(EnumType.STRING)
     private Status status;
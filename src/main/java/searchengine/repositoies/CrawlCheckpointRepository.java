@@ -0,0 +1,21 @@
+package searchengine.repositoies;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.models.CrawlCheckpoint;
+
+import java.util.Optional;
+
+@Repository
+public interface CrawlCheckpointRepository extends JpaRepository<CrawlCheckpoint, Integer> {
+    @Query(value = "from CrawlCheckpoint c where c.site.id = :siteId")
+    Optional<CrawlCheckpoint> findBySiteId(int siteId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "delete from CrawlCheckpoint c where c.site.id = :siteId")
+    void deleteBySiteId(int siteId);
+}
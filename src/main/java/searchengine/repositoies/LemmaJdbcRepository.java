@@ -0,0 +1,64 @@
+package searchengine.repositoies;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.*;
+
+/**
+ * Пакетная запись лемм в обход JPA: частоты добавляются одним запросом на пакет по уникальному ключу
+ * (lemma, site_id), без предварительного чтения каждой леммы.
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "storage.type", havingValue = "jpa", matchIfMissing = true)
+public class LemmaJdbcRepository {
+    private static final int BATCH_SIZE = 1000;
+    private static final String UPSERT_FREQUENCY_SQL = "insert into lemma (site_id, lemma, frequency) " +
+            "values (?, ?, ?) on duplicate key update frequency = frequency + ?";
+    private static final String SELECT_IDS_SQL = "select id, lemma from lemma " +
+            "where site_id = :siteId and lemma in (:lemmas)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    /**
+     * Создает недостающие леммы сайта и увеличивает частоту существующих.
+     * Леммы записываются в порядке сортировки, чтобы параллельные пакеты блокировали строки в одном порядке.
+     *
+     * @param increments прирост частоты для каждой леммы
+     */
+    public void upsertFrequencies(int siteId, Map<String, Integer> increments) {
+        List<Map.Entry<String, Integer>> entries = increments.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .toList();
+
+        jdbcTemplate.batchUpdate(UPSERT_FREQUENCY_SQL, entries, BATCH_SIZE, (statement, entry) -> {
+            statement.setInt(1, siteId);
+            statement.setString(2, entry.getKey());
+            statement.setInt(3, entry.getValue());
+            statement.setInt(4, entry.getValue());
+        });
+    }
+
+    public Map<String, Integer> findIds(int siteId, Collection<String> lemmas) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> lemmaList = new ArrayList<>(lemmas);
+
+        for (int from = 0; from < lemmaList.size(); from += BATCH_SIZE) {
+            MapSqlParameterSource parameters = new MapSqlParameterSource()
+                    .addValue("siteId", siteId)
+                    .addValue("lemmas", lemmaList.subList(from, Math.min(from + BATCH_SIZE, lemmaList.size())));
+            namedParameterJdbcTemplate.query(SELECT_IDS_SQL, parameters,
+                    resultSet -> {
+                        ids.put(resultSet.getString("lemma"), resultSet.getInt("id"));
+                    });
+        }
+
+        return ids;
+    }
+}
@@ -0,0 +1,16 @@
+package searchengine.repositoies;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.models.PageContent;
+
+@Repository
+public interface PageContentRepository extends JpaRepository<PageContent, Integer> {
+    @Transactional
+    @Modifying
+    @Query(value = "delete from PageContent c where c.pageId = :pageId")
+    void deleteByPageId(int pageId);
+}
@@ -4,20 +4,37 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import searchengine.models.Page;
-import searchengine.models.Site;
 
 import java.util.List;
-import java.util.Optional;
 
 @Repository
 public interface PageRepository extends JpaRepository<Page, Integer> {
-    void deleteAllBySite(Site site);
+    @Query(value = "select count(p.id) from Page p where p.site.id = :siteId")
+    Integer getCountId(int siteId);
 
-    List<Page> findAllBySite(Site site);
+    @Query(value = "select count(p.id) from Page p where p.site.id = :siteId and p.code = 200")
+    Integer getIndexedCountId(int siteId);
 
-    @Query(value = "from Page p where p.path = ?1 and p.site.id = ?2")
-    Optional<Page> findByPathAndSiteId(String path, int siteId);
+    @Query(value = "select p.id as id, p.path as path, p.code as code, p.etag as etag, " +
+            "p.lastModified as lastModified, p.contentHash as contentHash, " +
+            "p.simHash as simHash, p.duplicateOf as duplicateOf from Page p where p.site.id = :siteId")
+    List<PageVersionView> findVersionsBySiteId(int siteId);
 
-    @Query(value = "select count(p.id) from Page p where p.site.id = :siteId")
-    Integer getCountId(int siteId);
+    interface PageVersionView {
+        Integer getId();
+
+        String getPath();
+
+        Integer getCode();
+
+        String getEtag();
+
+        String getLastModified();
+
+        String getContentHash();
+
+        Long getSimHash();
+
+        String getDuplicateOf();
+    }
 }
@@ -0,0 +1,104 @@
+package searchengine.repositoies;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.log4j.Logger;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import searchengine.config.IndexWriterConfig;
+import searchengine.models.SearchIndex;
+import searchengine.services.IndexingService;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HexFormat;
+
+/**
+ * Пакетная запись индекса в обход JPA. Идентификаторы строк генерирует база, поэтому Hibernate
+ * не может объединять такие вставки в пакеты и отправлял бы каждую строку отдельным запросом.
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "storage.type", havingValue = "jpa", matchIfMissing = true)
+public class SearchIndexJdbcRepository {
+    private static final Logger log = Logger.getLogger(IndexingService.class);
+    private static final String INSERT_SQL = "insert into search_index (site_id, page_id, lemma_id, lemma_rank, positions) " +
+            "values (?, ?, ?, ?, ?)";
+    private static final String LOAD_DATA_SQL = "load data local infile '%s' into table search_index " +
+            "character set utf8mb4 fields terminated by '\\t' lines terminated by '\\n' " +
+            "(site_id, page_id, lemma_id, lemma_rank, @positions) set positions = unhex(@positions)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IndexWriterConfig indexWriterConfig;
+
+    public void insertAll(Collection<SearchIndex> indexes) {
+        if (indexes.isEmpty()) {
+            return;
+        }
+
+        if (indexWriterConfig.isBulkLoad()) {
+            loadFromFile(indexes);
+        } else {
+            jdbcTemplate.batchUpdate(INSERT_SQL, indexes, Math.max(1, indexWriterConfig.getBatchSize()),
+                    (statement, index) -> {
+                        statement.setInt(1, index.getSiteId());
+                        statement.setInt(2, index.getPageId());
+                        statement.setInt(3, index.getLemmaId());
+                        statement.setFloat(4, index.getLemmaRank());
+                        statement.setBytes(5, index.getPositions());
+                    });
+        }
+    }
+
+    /**
+     * Записывает строки во временный файл и загружает его одним запросом.
+     */
+    private void loadFromFile(Collection<SearchIndex> indexes) {
+        Path file = null;
+        try {
+            file = createStagingFile();
+            HexFormat hexFormat = HexFormat.of();
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                for (SearchIndex index : indexes) {
+                    writer.append(String.valueOf(index.getSiteId())).append('\t')
+                            .append(String.valueOf(index.getPageId())).append('\t')
+                            .append(String.valueOf(index.getLemmaId())).append('\t')
+                            .append(String.valueOf(index.getLemmaRank())).append('\t')
+                            .append(index.getPositions() == null ? "" : hexFormat.formatHex(index.getPositions()))
+                            .append('\n');
+                }
+            }
+
+            String fileName = file.toAbsolutePath().toString().replace("\\", "\\\\").replace("'", "\\'");
+            jdbcTemplate.execute(LOAD_DATA_SQL.formatted(fileName));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось подготовить файл загрузки индекса", e);
+        } finally {
+            deleteStagingFile(file);
+        }
+    }
+
+    private Path createStagingFile() throws IOException {
+        String directory = indexWriterConfig.getBulkLoadDirectory();
+        return directory == null ?
+                Files.createTempFile("search-index-", ".tsv") :
+                Files.createTempFile(Path.of(directory), "search-index-", ".tsv");
+    }
+
+    private static void deleteStagingFile(Path file) {
+        if (file == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить файл загрузки индекса " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package searchengine.repositoies;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Удаление данных сайтов набором запросов по site_id вместо загрузки и удаления каждой сущности.
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "storage.type", havingValue = "jpa", matchIfMissing = true)
+public class SiteDataJdbcRepository {
+    private static final int DELETE_CHUNK_SIZE = 10_000;
+    /**
+     * Таблицы в порядке удаления: сначала зависимые, затем те, на которые они ссылаются
+     */
+    private static final List<String> SITE_TABLES = List.of("search_index", "page_content", "crawl_checkpoint",
+            "page", "lemma");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Удаляет все данные сайта порциями по {@value DELETE_CHUNK_SIZE} строк. Каждая порция фиксируется
+     * отдельно, поэтому метод нельзя вызывать внутри транзакции: иначе журнал отмены вырастет до размера сайта.
+     */
+    public void deleteSiteData(int siteId) {
+        SITE_TABLES.forEach(table -> deleteInChunks(table, siteId));
+        jdbcTemplate.update("delete from site where id = ?", siteId);
+    }
+
+    private void deleteInChunks(String table, int siteId) {
+        String sql = "delete from " + table + " where site_id = ? limit " + DELETE_CHUNK_SIZE;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(sql, siteId);
+        } while (deleted >= DELETE_CHUNK_SIZE);
+    }
+}
@@ -5,11 +5,15 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import searchengine.models.Site;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface SiteRepository extends JpaRepository<Site, Integer> {
-    Optional<Site> findByUrl(String url);
+    Optional<Site> findByUrlAndActiveTrue(String url);
+
+    @Query(value = "from Site s where s.url = :url and s.active = false order by s.id desc")
+    List<Site> findInactiveByUrl(String url);
 
     @Query(value = "select count(s.id) from Site s")
     Integer getCountId();
@@ -3,100 +3,144 @@ package searchengine.services;
 import lombok.RequiredArgsConstructor;
 import org.apache.log4j.Logger;
 import org.springframework.stereotype.Service;
+import searchengine.config.CrawlerConfig;
+import searchengine.config.SiteConfig;
 import searchengine.config.SitesListConfig;
 import searchengine.dto.response.ErrorResponse;
 import searchengine.dto.response.Response;
 import searchengine.dto.response.SuccessResponse;
-import searchengine.models.Site;
+import searchengine.storage.IndexStorage;
+import searchengine.task.IndexingJob;
+import searchengine.task.SiteIndexingTask;
 import searchengine.task.TaskBuilder;
 
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ForkJoinPool;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 public class IndexingService {
-    public static volatile boolean isIndexingNow;
+    private static final String SITE_URL_PREFIX_REGEX = "^((http|https)://)?(w{3}.)?";
+
     private final Logger log = Logger.getLogger(IndexingService.class);
     private final SitesListConfig sitesFromConfig;
-    private final RepositoryService repositoryService;
+    private final CrawlerConfig crawlerConfig;
+    private final IndexStorage indexStorage;
+    private volatile IndexingJob currentJob;
+
+    public boolean isIndexingNow() {
+        IndexingJob job = currentJob;
+        return job != null && job.isRunning();
+    }
 
-    public Response startIndexing() {
-        if (isIndexingNow) {
+    public synchronized Response startIndexing(boolean incremental, boolean quick) {
+        if (isIndexingNow()) {
             log.error("Ошибка при запуске индексации. Индексация страницы уже запущена");
             return new ErrorResponse("Индексация уже запущена");
         }
 
-        IndexingService.isIndexingNow = true;
-        repositoryService.cleanAllRepositories();
+        List<SiteConfig> siteConfigList = sitesFromConfig.getSites();
 
-        List<Site> siteList = sitesFromConfig.getSites()
-                .stream()
-                .map(item -> {
-                    Site site = new Site();
-                    site.setUrl(item.getUrl());
-                    site.setName(item.getName());
-                    return site;
-                })
-                .toList();
+        startJob(job -> TaskBuilder.makeTaskIndexingAllSite(job, siteConfigList, indexStorage, crawlerConfig,
+                incremental, quick));
+
+        return new SuccessResponse();
+    }
 
-        new Thread(() -> TaskBuilder.makeTaskIndexingAllSite(siteList, repositoryService)).start();
+    public synchronized Response resumeIndexing() {
+        if (isIndexingNow()) {
+            log.error("Ошибка при возобновлении индексации. Индексация страниц уже запущена");
+            return new ErrorResponse("Индексация уже запущена");
+        }
+
+        List<SiteConfig> siteConfigList = sitesFromConfig.getSites();
+
+        startJob(job -> TaskBuilder.makeTaskResumeIndexing(job, siteConfigList, indexStorage, crawlerConfig));
 
         return new SuccessResponse();
     }
 
-    public Response stopIndexing() {
-        if (!isIndexingNow) {
+    /**
+     * Останавливает всю индексацию или, если указан сайт, только его обход.
+     * Новую индексацию можно запустить после того, как остановленное задание допишет уже загруженные страницы.
+     */
+    public synchronized Response stopIndexing(String url) {
+        if (!isIndexingNow()) {
             log.error("Ошибка при остановке индексации. Индексация страниц не запущена");
             return new ErrorResponse("Индексация не запущена");
         }
 
-        ForkJoinPool.commonPool().shutdownNow();
-        isIndexingNow = false;
+        if (currentJob.isCancelled()) {
+            log.error("Ошибка при остановке индексации. Задание " + currentJob.getId() + " уже останавливается");
+            return new ErrorResponse("Индексация уже останавливается");
+        }
 
-        repositoryService.stopIndexing();
+        if (url == null || url.isBlank()) {
+            currentJob.cancel();
+            indexStorage.stopIndexing();
+            log.info("Задание индексации " + currentJob.getId() + " остановлено");
+            return new SuccessResponse();
+        }
 
-        return new SuccessResponse();
-    }
+        Optional<SiteIndexingTask> task = findSiteConfig(url)
+                .flatMap(siteConfig -> currentJob.cancelSite(siteConfig.getUrl()));
+        if (task.isEmpty()) {
+            log.error("Ошибка при остановке индексации. Сайт '" + url + "' не индексируется");
+            return new ErrorResponse("Индексация данного сайта не запущена");
+        }
 
-    public Response startIndexingOneSite(String url) {
-        String regex = "^((http|https)://)?(w{3}.)?";
-        String destSite = url.replaceAll(regex, "");
+        indexStorage.getSiteById(task.get().getSite().getId()).ifPresent(indexStorage::stopSiteIndexing);
+        log.info("Индексация сайта " + task.get().getSite().getUrl() + " остановлена");
 
-        Set<String> sitesSet = sitesFromConfig.getSites()
-                .stream()
-                .map(siteConfig -> siteConfig.getUrl().replaceAll(regex, ""))
-                .collect(Collectors.toSet());
+        return new SuccessResponse();
+    }
 
-        boolean isSitePresentInConfig = sitesSet.contains(destSite);
+    public synchronized Response startIndexingOneSite(String url) {
+        Optional<SiteConfig> optionalSiteConfig = findSiteConfig(url);
 
-        if (!isSitePresentInConfig) {
+        if (optionalSiteConfig.isEmpty()) {
             log.error("Сайт '" + url + "' находится за пределами сайтов, указанных в конфигурационном файле");
             return new ErrorResponse("Данная страница не указана в списке конфигурационном файле.");
         }
 
-        if (isIndexingNow) {
+        if (isIndexingNow()) {
             log.error("Ошибка при запуске индексации. Индексация страниц уже запущена");
             return new ErrorResponse("Ошибка при запуске индексации. Индексация страниц уже запущена");
         }
 
-        isIndexingNow = true;
-
-        Site site = new Site();
-        sitesFromConfig.getSites()
-                .stream()
-                .filter(siteConfig -> siteConfig.getUrl().replaceAll(regex, "").equals(destSite))
-                .forEach(siteConfig -> {
-                    site.setName(siteConfig.getName());
-                    site.setUrl(siteConfig.getUrl());
-                });
+        SiteConfig siteConfig = optionalSiteConfig.get();
 
-        log.info("Сайт '" + site.getUrl() + "' добавлен в очередь на индексацию");
+        log.info("Сайт '" + siteConfig.getUrl() + "' добавлен в очередь на индексацию");
 
-        new Thread(() -> TaskBuilder.makeTaskIndexingOneSite(site, repositoryService)).start();
+        startJob(job -> TaskBuilder.makeTaskIndexingOneSite(job, siteConfig, indexStorage, crawlerConfig));
 
         return new SuccessResponse();
     }
-}
\ No newline at end of file
+
+    private void startJob(Consumer<IndexingJob> jobBody) {
+        IndexingJob job = new IndexingJob();
+        currentJob = job;
+
+        new Thread(() -> {
+            try {
+                jobBody.accept(job);
+            } catch (RuntimeException e) {
+                log.error("Ошибка в задании индексации " + job.getId() + ": " + e.getMessage());
+            } finally {
+                job.getCompletion().complete(null);
+            }
+        }, "indexing-job-" + job.getId()).start();
+
+        log.info("Запущено задание индексации " + job.getId());
+    }
+
+    private Optional<SiteConfig> findSiteConfig(String url) {
+        String destSite = url.replaceAll(SITE_URL_PREFIX_REGEX, "");
+
+        return sitesFromConfig.getSites()
+                .stream()
+                .filter(item -> item.getUrl().replaceAll(SITE_URL_PREFIX_REGEX, "").equals(destSite))
+                .findFirst();
+    }
+}
@@ -0,0 +1,102 @@
+package searchengine.services;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Словарь лемм одного сайта на время обхода: идентификаторы уже записанных лемм и накопленный,
+ * еще не сохраненный прирост их частот. Потокобезопасен и не требует внешней синхронизации.
+ * <p>
+ * Изменения, сделанные внутри транзакции, копятся в {@link Update} и попадают в словарь только после ее
+ * фиксации, поэтому откат транзакции не оставляет в словаре идентификаторов несохраненных лемм
+ * и не приводит к повторному учету частот.
+ */
+public class LemmaDictionary {
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Map<String, Integer> pendingFrequencies = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    public Integer getId(String lemma) {
+        return ids.get(lemma);
+    }
+
+    public void putIds(Map<String, Integer> lemmaIds) {
+        ids.putAll(lemmaIds);
+    }
+
+    public void addFrequency(String lemma) {
+        addFrequency(lemma, 1);
+    }
+
+    private void addFrequency(String lemma, int increment) {
+        if (pendingFrequencies.merge(lemma, increment, Integer::sum) == increment) {
+            pendingCount.incrementAndGet();
+        }
+    }
+
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Забирает накопленный прирост частот. Удаление каждой леммы атомарно относительно
+     * {@link #addFrequency(String)}, поэтому параллельные приращения не теряются.
+     */
+    public Map<String, Integer> drainFrequencies() {
+        Map<String, Integer> increments = new HashMap<>();
+        for (String lemma : pendingFrequencies.keySet()) {
+            Integer increment = pendingFrequencies.remove(lemma);
+            if (increment != null) {
+                increments.put(lemma, increment);
+                pendingCount.decrementAndGet();
+            }
+        }
+        return increments;
+    }
+
+    public Update begin() {
+        return new Update();
+    }
+
+    /**
+     * Изменения словаря в рамках одной транзакции.
+     */
+    public class Update {
+        private final Map<String, Integer> newIds = new HashMap<>();
+        private final Map<String, Integer> frequencies = new HashMap<>();
+        private final Map<String, Integer> drainedFrequencies = new HashMap<>();
+
+        public Integer getId(String lemma) {
+            Integer id = ids.get(lemma);
+            return id != null ? id : newIds.get(lemma);
+        }
+
+        public void putIds(Map<String, Integer> lemmaIds) {
+            newIds.putAll(lemmaIds);
+        }
+
+        public void addFrequency(String lemma) {
+            frequencies.merge(lemma, 1, Integer::sum);
+        }
+
+        /**
+         * Забирает накопленный в словаре прирост частот для сохранения в этой транзакции.
+         */
+        public Map<String, Integer> drainFrequencies() {
+            Map<String, Integer> increments = LemmaDictionary.this.drainFrequencies();
+            increments.forEach((lemma, increment) -> drainedFrequencies.merge(lemma, increment, Integer::sum));
+            return increments;
+        }
+
+        public void commit() {
+            ids.putAll(newIds);
+            frequencies.forEach(LemmaDictionary.this::addFrequency);
+        }
+
+        public void rollback() {
+            drainedFrequencies.forEach(LemmaDictionary.this::addFrequency);
+        }
+    }
+}
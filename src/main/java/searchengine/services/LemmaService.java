@@ -3,91 +3,124 @@ package searchengine.services;
 import org.apache.log4j.Logger;
 import org.apache.lucene.morphology.LuceneMorphology;
 import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
-import org.jsoup.Jsoup;
 import searchengine.models.Page;
+import searchengine.utils.BoundedCache;
+import searchengine.utils.WordTokenizer;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 public class LemmaService {
     private final static Logger log = Logger.getLogger(IndexingService.class);
+    private static final int WORD_CACHE_CAPACITY = 200_000;
+    static final int MIN_LEMMA_LENGTH = 3;
+    private static final LuceneMorphology russianLuceneMorphology = loadMorphology();
+    private static final BoundedCache<String, WordInfo> wordCache = new BoundedCache<>(WORD_CACHE_CAPACITY);
+
+    /**
+     * Загружает словари морфологии. Вызывается при старте приложения, чтобы первая индексация
+     * и первый поиск не ждали загрузки.
+     */
+    public static void init() {
+        log.info("Словари морфологии загружены");
+    }
 
-    public static Map<String, Integer> getLemmas(Page page) {
+    /**
+     * @return леммы страницы с позициями их вхождений в тексте
+     */
+    public static Map<String, int[]> getLemmas(Page page) {
         log.info("Лемматизация страницы: " + page.getSite().getUrl().concat(page.getPath()));
 
-        Map<String, Integer> lemmaMap = new HashMap<>();
-        String pageText;
+        return getTextLemmas(page.getText());
+    }
+
+    static Map<String, int[]> getTextLemmas(String text) {
+        return LemmaFinder.getSequentialWordNumber(text);
+    }
+
+    public static Set<String> getLemmasFromQuery(String query) {
+        return LemmaFinder.getSequentialWordNumberFromQuery(query);
+    }
+
+    /**
+     * @param word слово в нижнем регистре, с е вместо ё
+     * @return возможные нормальные формы слова или пустой список для служебных частей речи
+     */
+    public static List<String> getWordLemmas(String word) {
+        WordInfo wordInfo = getWordInfo(word);
+        return wordInfo.isCorrectWord() ? wordInfo.normalForms() : List.of();
+    }
+
+    private static LuceneMorphology loadMorphology() {
         try {
-            LemmaFinder lemmaFinder = new LemmaFinder();
-            pageText = Jsoup.parse(page.getContext()).body().text();
-            lemmaMap.putAll(lemmaFinder.getSequentialWordNumber(pageText));
-        } catch (IOException ex) {
-            ex.printStackTrace();
-            log.error("Ошибка при лемматизации страницы " + page.getSite().getUrl().concat(page.getPath()) + ": "
-                    + ex.getMessage());
+            return new RussianLuceneMorphology();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось загрузить словари морфологии", e);
         }
+    }
 
-        return lemmaMap;
+    private static WordInfo getWordInfo(String word) {
+        return wordCache.get(word, LemmaService::analyzeWord);
     }
 
-    public static Set<String> getLemmasFromQuery(String query) throws IOException {
-        LemmaFinder lemmaFinder = new LemmaFinder();
-        return lemmaFinder.getSequentialWordNumberFromQuery(query);
+    private static WordInfo analyzeWord(String word) {
+        boolean isCorrectWord = isCorrectWord(russianLuceneMorphology.getMorphInfo(word).toString());
+        List<String> normalForms = isCorrectWord ? russianLuceneMorphology.getNormalForms(word) : List.of();
+        return new WordInfo(isCorrectWord, normalForms);
     }
 
-    private static class LemmaFinder {
-        LuceneMorphology russianLuceneMorphology;
-
-        public synchronized Map<String, Integer> getSequentialWordNumber(String text) throws IOException {
-            russianLuceneMorphology = new RussianLuceneMorphology();
-
-            List<String> wordList = Arrays
-                    .stream(text.replaceAll("[^а-яА-ЯёЁ\\s]", " ")
-                            .replaceAll("\\s{2,}", " ")
-                            .trim()
-                            .toLowerCase()
-                            .split(" "))
-                    .filter(word -> isCorrectWord(russianLuceneMorphology.getMorphInfo(word).toString()))
-                    .map(russianLuceneMorphology::getNormalForms)
-                    .map(list -> list.get(0))
-                    .map(word -> word.replaceAll("ё", "е"))
-                    .filter(word -> word.length() > 2)
-                    .toList();
-
-            Map<String, Long> wordMap = wordList.stream()
-                    .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
-
-            return wordMap.entrySet()
-                            .stream()
-                            .collect(Collectors.toMap(
-                                    Map.Entry::getKey,
-                                    entry -> Integer.parseInt(String.valueOf(entry.getValue()))));
-        }
+    private static boolean isCorrectWord(String word) {
+        return !word.contains("СОЮЗ") && !word.contains("ПРЕДЛ") && !word.contains("МЕЖД");
+    }
 
-        private Set<String> getSequentialWordNumberFromQuery(String query) throws IOException {
-            russianLuceneMorphology = new RussianLuceneMorphology();
-            List<String> wordList = Arrays.stream(
-                            query.replaceAll("[^а-яА-ЯёЁ\\s]", " ")
-                                    .replaceAll("\\s{2,}", " ")
-                                    .trim()
-                                    .toLowerCase()
-                                    .split(" "))
-                    .filter(word -> isCorrectWord(russianLuceneMorphology.getMorphInfo(word).toString())).toList();
+    /**
+     * @param isCorrectWord  false для служебных частей речи: союзов, предлогов и междометий
+     */
+    private record WordInfo(boolean isCorrectWord, List<String> normalForms) {
+    }
 
-            Set<String> lemmaQuerySet = new HashSet<>();
-            wordList.forEach(word -> {
-                List<String> queryLemmaList = russianLuceneMorphology.getNormalForms(word);
-                lemmaQuerySet.addAll(queryLemmaList);
+    private static class LemmaFinder {
+
+        public static Map<String, int[]> getSequentialWordNumber(String text) {
+            Map<String, PositionList> lemmaPositions = new HashMap<>();
+            WordTokenizer.forEachWord(text, (word, position) -> {
+                WordInfo wordInfo = getWordInfo(word);
+                if (!wordInfo.isCorrectWord() || wordInfo.normalForms().isEmpty()) {
+                    return;
+                }
+
+                String lemma = wordInfo.normalForms().get(0);
+                if (lemma.length() >= MIN_LEMMA_LENGTH) {
+                    lemmaPositions.computeIfAbsent(lemma, key -> new PositionList()).add(position);
+                }
             });
 
-            return new HashSet<>(lemmaQuerySet);
+            Map<String, int[]> lemmaMap = new HashMap<>(lemmaPositions.size() * 4 / 3 + 1);
+            lemmaPositions.forEach((lemma, positions) -> lemmaMap.put(lemma, positions.toArray()));
+            return lemmaMap;
         }
 
+        private static Set<String> getSequentialWordNumberFromQuery(String query) {
+            Set<String> lemmaQuerySet = new HashSet<>();
+            WordTokenizer.forEachWord(query, (word, position) -> lemmaQuerySet.addAll(getWordLemmas(word)));
+            return lemmaQuerySet;
+        }
+    }
+
+    private static class PositionList {
+        private int[] positions = new int[4];
+        private int size;
+
+        private void add(int position) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
 
-        private synchronized boolean isCorrectWord(String word) {
-            return !word.contains("СОЮЗ") && !word.contains("ПРЕДЛ") && !word.contains("МЕЖД");
+        private int[] toArray() {
+            return Arrays.copyOf(positions, size);
         }
     }
 }
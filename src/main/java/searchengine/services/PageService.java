@@ -1,42 +1,28 @@
 package searchengine.services;
 
 import lombok.AllArgsConstructor;
-import org.jsoup.Connection;
 import searchengine.models.Page;
 import searchengine.models.Site;
-import searchengine.repositoies.PageRepository;
-import searchengine.repositoies.SiteRepository;
-
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.Optional;
+import searchengine.task.FetchResult;
 
 @AllArgsConstructor
 public class PageService {
-    public static synchronized Optional<Page> getPage(Connection.Response response, HashMap<Site, String> siteMap,
-                                                      RepositoryService repositoryService) throws IOException {
-        Optional<Site> site = siteMap.keySet().stream().findFirst();
-        Optional<String> url = siteMap.values().stream().findFirst();
-
-        if (site.isEmpty()) {
-            return Optional.empty();
-        }
-        String path = makePath(site.get(), url.get());
-
-        if (checkForAlreadyExistPath(path, repositoryService, site.get().getUrl())) {
-            return Optional.empty();
-        }
-
+    public static Page getPage(FetchResult fetchResult, Site site, String url) {
         Page page = new Page();
-        page.setPath(path);
-        page.setSite(site.get());
-        page.setCode(response.statusCode());
-        page.setContext(response.parse().html());
+        page.setPath(makePath(site, url));
+        page.setSite(site);
+        page.setCode(fetchResult.getStatusCode());
+        page.setContext(fetchResult.getHtml());
+        page.setTitle(fetchResult.getTitle());
+        page.setText(fetchResult.getText());
+        page.setEtag(fetchResult.getEtag());
+        page.setLastModified(fetchResult.getLastModified());
+        page.setContentHash(fetchResult.getContentHash());
 
-        return Optional.of(page);
+        return page;
     }
 
-    public static synchronized Page getPageWithError(Site site, String url, int statusCode) {
+    public static Page getPageWithError(Site site, String url, int statusCode) {
         Page page = new Page();
         page.setCode(statusCode);
         page.setSite(site);
@@ -45,21 +31,18 @@ public class PageService {
         return page;
     }
 
-    private static synchronized String makePath(Site site, String url) {
-        return url.equals(site.getUrl()) ?
-                url.replaceAll(site.getUrl(), "/") :
-                url.replaceAll(site.getUrl(), "");
+    public static String makePath(Site site, String url) {
+        String baseUrl = getBaseUrl(site);
+        String path = url.startsWith(baseUrl) ? url.substring(baseUrl.length()) : url;
+        return path.isEmpty() ? "/" : path;
     }
 
-    private static synchronized boolean checkForAlreadyExistPath(String path, RepositoryService repositoryService, String url) {
-        SiteRepository siteRepository = repositoryService.getSiteRepository();
-        PageRepository pageRepository = repositoryService.getPageRepository();
-
-        Optional<Site> site = siteRepository.findByUrl(url);
-        if (site.isEmpty()) {
-            return false;
-        }
+    public static String makeUrl(Site site, String path) {
+        return getBaseUrl(site).concat(path);
+    }
 
-        return pageRepository.findByPathAndSiteId(path, site.get().getId()).isPresent();
+    private static String getBaseUrl(Site site) {
+        String siteUrl = site.getUrl();
+        return siteUrl.endsWith("/") ? siteUrl.substring(0, siteUrl.length() - 1) : siteUrl;
     }
-}
\ No newline at end of file
+}
@@ -1,141 +1,485 @@
 package searchengine.services;
 
-import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import org.apache.log4j.Logger;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.config.CrawlerConfig;
 import searchengine.enums.Status;
+import searchengine.models.CrawlCheckpoint;
 import searchengine.models.Lemma;
 import searchengine.models.Page;
+import searchengine.models.PageContent;
 import searchengine.models.SearchIndex;
 import searchengine.models.Site;
+import searchengine.repositoies.CrawlCheckpointRepository;
+import searchengine.repositoies.LemmaJdbcRepository;
 import searchengine.repositoies.LemmaRepository;
+import searchengine.repositoies.PageContentRepository;
 import searchengine.repositoies.PageRepository;
+import searchengine.repositoies.SearchIndexJdbcRepository;
 import searchengine.repositoies.SearchIndexRepository;
+import searchengine.repositoies.SiteDataJdbcRepository;
 import searchengine.repositoies.SiteRepository;
+import searchengine.storage.IndexStorage;
+import searchengine.storage.PageVersion;
+import searchengine.task.CrawlUrl;
+import searchengine.utils.ContentCodec;
+import searchengine.utils.PositionCodec;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/**
+ * Хранилище индекса в MySQL через Spring Data JPA и пакетные JDBC-запросы.
+ */
 @Service
 @RequiredArgsConstructor
-@Getter
-public class RepositoryService {
+@ConditionalOnProperty(name = "storage.type", havingValue = "jpa", matchIfMissing = true)
+public class RepositoryService implements IndexStorage {
+    private static final Logger log = Logger.getLogger(IndexingService.class);
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
     private final LemmaRepository lemmaRepository;
     private final SearchIndexRepository searchIndexRepository;
+    private final CrawlCheckpointRepository crawlCheckpointRepository;
+    private final PageContentRepository pageContentRepository;
+    private final LemmaJdbcRepository lemmaJdbcRepository;
+    private final SearchIndexJdbcRepository searchIndexJdbcRepository;
+    private final SiteDataJdbcRepository siteDataJdbcRepository;
+    private final CrawlerConfig crawlerConfig;
+    private final Map<Integer, LemmaDictionary> lemmaDictionaries = new ConcurrentHashMap<>();
+    private final ExecutorService generationCollector = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "index-generation-gc");
+        thread.setDaemon(true);
+        return thread;
+    });
 
+    @Override
     @Transactional(isolation = Isolation.SERIALIZABLE)
-    public void cleanAllRepositories() {
-        siteRepository.deleteAll();
-        pageRepository.deleteAll();
-        lemmaRepository.deleteAll();
-        searchIndexRepository.deleteAll();
+    public void stopIndexing() {
+        siteRepository.findAll().forEach(this::stopSiteIndexing);
     }
 
+    @Override
+    public void stopSiteIndexing(Site site) {
+        if (site.getStatus().equals(Status.INDEXING)) {
+            site.setStatus(Status.FAILED);
+            site.setLastError("Индексация остановлена пользователем");
+            site.setStatusTime(new Date());
+            siteRepository.save(site);
+        }
+    }
+
+    @Override
     @Transactional(isolation = Isolation.SERIALIZABLE)
-    public void stopIndexing() {
-        siteRepository.findAll().forEach(site -> {
-            if (site.getStatus().equals(Status.INDEXING)) {
-                site.setStatus(Status.FAILED);
-                site.setLastError("Индексация остановлена пользователем");
-                site.setStatusTime(new Date());
-                siteRepository.save(site);
-            }
+    public void failSiteIndexing(Site site, String message) {
+        siteRepository.findById(site.getId()).ifPresent(existSite -> {
+            existSite.setStatus(Status.FAILED);
+            existSite.setLastError(message);
+            existSite.setStatusTime(new Date());
+            siteRepository.saveAndFlush(existSite);
         });
     }
 
+    /**
+     * Сохраняет новое неактивное поколение индекса сайта. Прежние неактивные поколения этого адреса
+     * (незавершенные или неудачные обходы) удаляются в фоне после фиксации транзакции.
+     */
+    @Override
     @Transactional(isolation = Isolation.SERIALIZABLE)
-    public void cleanDataSiteForIndexing(Site site) {
-        Optional<Site> optionalSite = siteRepository.findByUrl(site.getUrl());
-        optionalSite.ifPresent(alreadyExistSite -> {
-            List<Page> alreadyExistPageList = pageRepository.findAllBySite(alreadyExistSite);
+    public void saveNewGeneration(Site site) {
+        List<Site> staleGenerations = siteRepository.findInactiveByUrl(site.getUrl());
+        site.setActive(false);
+        saveNewSite(site);
+        dropGenerationsAfterCommit(staleGenerations);
+    }
 
-            siteRepository.deleteById(alreadyExistSite.getId());
-            pageRepository.deleteAllBySite(alreadyExistSite);
-            lemmaRepository.deleteAllBySite(alreadyExistSite);
-            alreadyExistPageList.forEach(page -> searchIndexRepository.deleteByPageId(page.getId()));
+    /**
+     * Делает поколение индекса сайта активным: поиск переключается на него одной транзакцией,
+     * а прежнее активное поколение удаляется в фоне после ее фиксации.
+     */
+    @Override
+    @Transactional(isolation = Isolation.SERIALIZABLE)
+    public void activateGeneration(Site site) {
+        Optional<Site> previousGeneration = siteRepository.findByUrlAndActiveTrue(site.getUrl())
+                .filter(activeSite -> !activeSite.getId().equals(site.getId()));
+        previousGeneration.ifPresent(activeSite -> {
+            activeSite.setActive(false);
+            siteRepository.saveAndFlush(activeSite);
         });
+
+        site.setActive(true);
+        site.setStatus(Status.INDEXED);
+        site.setStatusTime(new Date());
+        siteRepository.saveAndFlush(site);
+
+        dropGenerationsAfterCommit(previousGeneration.stream().toList());
     }
 
+    private void dropGenerationsAfterCommit(List<Site> generations) {
+        if (generations.isEmpty()) {
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                generations.forEach(generation -> generationCollector.execute(() -> dropGeneration(generation)));
+            }
+        });
+    }
+
+    private void dropGeneration(Site generation) {
+        try {
+            lemmaDictionaries.remove(generation.getId());
+            siteDataJdbcRepository.deleteSiteData(generation.getId());
+            log.info("Удалено старое поколение индекса сайта " + generation.getUrl() + " (" + generation.getId() + ")");
+        } catch (RuntimeException e) {
+            log.error("Не удалось удалить старое поколение индекса сайта " + generation.getUrl() + ": "
+                    + e.getMessage());
+        }
+    }
+
+    @Override
     @Transactional(isolation = Isolation.SERIALIZABLE)
     public void saveNewSite(Site site) {
         site.setStatus(Status.INDEXING);
         site.setStatusTime(new Date());
+        site.setLastError(null);
         site.setName(site.getName());
         site.setUrl(site.getUrl());
         siteRepository.saveAndFlush(site);
     }
 
+    @Override
     @Transactional(isolation = Isolation.SERIALIZABLE)
     public void saveSiteWithLastErrorIndexing(Site site, int statusCode, String message) {
-        Optional<Site> optionalSite = siteRepository.findByUrl(site.getUrl());
-        if(optionalSite.isPresent()) {
+        if (siteRepository.existsById(site.getId())) {
             site.setLastError("Ошибка подключения. Код ошибки - " + statusCode + " Причина: " + message);
             site.setStatusTime(new Date());
             siteRepository.saveAndFlush(site);
         }
     }
 
+    @Override
+    @Transactional(isolation = Isolation.SERIALIZABLE)
+    public Map<String, PageVersion> getPageVersions(Site site) {
+        Map<String, PageVersion> pageVersions = new HashMap<>();
+        pageRepository.findVersionsBySiteId(site.getId()).forEach(version -> pageVersions.put(version.getPath(),
+                new PageVersion(version.getId(), version.getPath(), version.getCode(), version.getEtag(),
+                        version.getLastModified(), version.getContentHash(), version.getSimHash(),
+                        version.getDuplicateOf())));
+        return pageVersions;
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.SERIALIZABLE)
+    public void saveCheckpoint(Site site, List<CrawlUrl> pendingUrls) {
+        CrawlCheckpoint checkpoint = crawlCheckpointRepository.findBySiteId(site.getId())
+                .orElseGet(CrawlCheckpoint::new);
+        checkpoint.setSite(site);
+        checkpoint.setPendingUrls(CrawlUrl.encode(pendingUrls));
+        checkpoint.setPendingCount(pendingUrls.size());
+        checkpoint.setSavedTime(new Date());
+        crawlCheckpointRepository.saveAndFlush(checkpoint);
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.SERIALIZABLE)
+    public Optional<List<CrawlUrl>> getCheckpoint(Site site) {
+        return crawlCheckpointRepository.findBySiteId(site.getId())
+                .map(checkpoint -> CrawlUrl.decode(checkpoint.getPendingUrls()));
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.SERIALIZABLE)
+    public void deleteCheckpoint(Site site) {
+        crawlCheckpointRepository.deleteBySiteId(site.getId());
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.SERIALIZABLE)
+    public void removePageIndex(int pageId) {
+        lemmaRepository.decrementFrequencyByPageId(pageId);
+        searchIndexRepository.deleteByPageId(pageId);
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.SERIALIZABLE)
+    public void deleteUnusedLemmas(Site site) {
+        lemmaRepository.deleteUnusedBySiteId(site.getId());
+    }
+
+    /**
+     * Сохраняет группу разобранных страниц вместе с их леммами и индексом одной транзакцией.
+     * Уровень READ_COMMITTED не ставит блокировки на читаемые строки: записи разных сайтов
+     * не пересекаются, а частоты лемм меняются атомарными upsert.
+     * <p>
+     * Словари лемм и идентификаторы новых страниц меняются только после фиксации транзакции: при откате
+     * страницы можно сохранить повторно без двойного учета частот.
+     */
+    @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public void storePages(List<Page> pages) {
+        Map<Integer, LemmaDictionary.Update> updates = new HashMap<>();
+        List<Page> newPages = pages.stream().filter(page -> page.getId() == null).toList();
+        registerDictionaryUpdates(updates.values(), newPages);
+
+        pages.forEach(page -> {
+            if (page.getId() != null) {
+                removePageIndex(page.getId());
+            }
+            savePage(page);
+            if (page.getDuplicateOf() == null && page.getLemmas() != null) {
+                LemmaDictionary.Update update = updates.computeIfAbsent(page.getSite().getId(),
+                        siteId -> getLemmaDictionary(siteId).begin());
+                saveIndex(saveLemma(page, update));
+            }
+        });
+
+        updates.forEach((siteId, update) -> {
+            if (getLemmaDictionary(siteId).getPendingCount() >= crawlerConfig.getLemmaFlushThreshold()) {
+                saveFrequencies(siteId, update);
+            }
+        });
+    }
+
+    @Override
     @Transactional(isolation = Isolation.SERIALIZABLE)
     public void savePage(Page page) {
         pageRepository.saveAndFlush(page);
+
+        if (page.getContext() != null) {
+            PageContent pageContent = new PageContent();
+            pageContent.setPageId(page.getId());
+            pageContent.setSiteId(page.getSite().getId());
+            pageContent.setHtml(ContentCodec.compress(page.getContext()));
+            pageContent.setText(ContentCodec.compress(page.getText()));
+            pageContentRepository.save(pageContent);
+        } else {
+            // у почти дубликата и страницы с ошибкой нет индекса, поэтому прежний текст не должен попадать в сниппеты
+            pageContentRepository.deleteByPageId(page.getId());
+        }
     }
 
+    @Override
     @Transactional(isolation = Isolation.SERIALIZABLE)
-    public synchronized Map<Page, Set<Lemma>> saveLemma(Page page) {
-        Map<String, Integer> lemmas = Collections.synchronizedMap(LemmaService.getLemmas(page));
-        Set<Lemma> lemmaSet = Collections.synchronizedSet(new HashSet<>());
+    public Optional<String> getPageText(Page page) {
+        return pageContentRepository.findById(page.getId())
+                .map(pageContent -> ContentCodec.decompress(pageContent.getText()));
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public Optional<String> getPageHtml(int pageId) {
+        return pageContentRepository.findById(pageId)
+                .map(pageContent -> ContentCodec.decompress(pageContent.getHtml()));
+    }
 
-        lemmas.forEach((word, count) -> {
-            Optional<Lemma> optionalLemma = lemmaRepository.findByLemmaAndSiteId(word, page.getSite().getId());
-            if (optionalLemma.isEmpty()) {
-                Lemma lemma = new Lemma();
-                lemma.setFrequency(1);
-                lemma.setLemma(word);
-                lemma.setSite(page.getSite());
-                lemma.setRank(count.floatValue());
+    /**
+     * Сохраняет леммы страницы без глобальной блокировки. Новые для словаря сайта леммы создаются одним
+     * пакетом вместе с приростом частоты, а прирост частот уже известных лемм копится в памяти
+     * и сохраняется пакетом при накоплении {@link CrawlerConfig#getLemmaFlushThreshold()} лемм.
+     */
+    private Map<Page, Set<Lemma>> saveLemma(Page page, LemmaDictionary.Update update) {
+        Site site = page.getSite();
 
-                lemmaSet.add(lemma);
+        Map<String, Integer> newLemmas = new HashMap<>();
+        page.getLemmas().keySet().forEach(word -> {
+            if (update.getId(word) == null) {
+                newLemmas.put(word, 1);
             } else {
-                Lemma lemmaDB = optionalLemma.get();
-                int existLemmaFrequency = lemmaDB.getFrequency();
-                lemmaDB.setFrequency(++existLemmaFrequency);
-                lemmaDB.setRank(count.floatValue());
-                
-                lemmaSet.add(lemmaDB);
+                update.addFrequency(word);
             }
         });
 
-        lemmaRepository.saveAllAndFlush(lemmaSet);
+        if (!newLemmas.isEmpty()) {
+            lemmaJdbcRepository.upsertFrequencies(site.getId(), newLemmas);
+            update.putIds(lemmaJdbcRepository.findIds(site.getId(), newLemmas.keySet()));
+        }
+
+        Set<Lemma> lemmaSet = new HashSet<>();
+        page.getLemmas().forEach((word, positions) -> {
+            Lemma lemma = new Lemma();
+            lemma.setId(update.getId(word));
+            lemma.setLemma(word);
+            lemma.setSite(site);
+            lemma.setRank((float) positions.length);
+            lemma.setPositions(positions);
+            lemmaSet.add(lemma);
+        });
+
         return new HashMap<>() {{
             put(page, lemmaSet);
         }};
     }
 
+    /**
+     * Сохраняет накопленный в словаре сайта прирост частот лемм. При откате транзакции прирост
+     * возвращается в словарь.
+     */
+    @Override
     @Transactional(isolation = Isolation.SERIALIZABLE)
-    public void saveSite(Site site) {
-        siteRepository.saveAndFlush(site);
+    public void flushLemmaFrequencies(Site site) {
+        LemmaDictionary dictionary = lemmaDictionaries.get(site.getId());
+        if (dictionary == null) {
+            return;
+        }
+
+        LemmaDictionary.Update update = dictionary.begin();
+        registerDictionaryUpdates(List.of(update), List.of());
+        saveFrequencies(site.getId(), update);
     }
 
+    /**
+     * Сохраняет накопленные частоты и освобождает словарь лемм сайта после окончания обхода.
+     */
+    @Override
+    @Transactional(isolation = Isolation.SERIALIZABLE)
+    public void releaseLemmaDictionary(Site site) {
+        flushLemmaFrequencies(site);
+        lemmaDictionaries.remove(site.getId());
+    }
+
+    private LemmaDictionary getLemmaDictionary(int siteId) {
+        return lemmaDictionaries.computeIfAbsent(siteId, id -> new LemmaDictionary());
+    }
+
+    private void saveFrequencies(int siteId, LemmaDictionary.Update update) {
+        Map<String, Integer> increments = update.drainFrequencies();
+        if (!increments.isEmpty()) {
+            lemmaJdbcRepository.upsertFrequencies(siteId, increments);
+        }
+    }
+
+    /**
+     * Применяет изменения словарей лемм после фиксации текущей транзакции. При откате возвращает в словари
+     * забранный прирост частот и сбрасывает идентификаторы, выданные новым страницам.
+     */
+    private void registerDictionaryUpdates(Collection<LemmaDictionary.Update> updates, List<Page> newPages) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    updates.forEach(LemmaDictionary.Update::commit);
+                } else {
+                    updates.forEach(LemmaDictionary.Update::rollback);
+                    newPages.forEach(page -> page.setId(null));
+                }
+            }
+        });
+    }
+
+    /**
+     * @return активное поколение индекса сайта
+     */
+    @Override
     @Transactional(isolation = Isolation.SERIALIZABLE)
     public Optional<Site> getSite(String url) {
-        return siteRepository.findByUrl(url);
+        return siteRepository.findByUrlAndActiveTrue(url);
+    }
+
+    /**
+     * @return последнее неактивное поколение индекса сайта, которое строится или не было достроено
+     */
+    @Override
+    @Transactional(isolation = Isolation.SERIALIZABLE)
+    public Optional<Site> getBuildingSite(String url) {
+        return siteRepository.findInactiveByUrl(url).stream().findFirst();
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public List<Site> getAllSites() {
+        return siteRepository.findAll();
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public int getSiteCount() {
+        return siteRepository.getCountId();
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public int getPageCount(int siteId) {
+        return pageRepository.getCountId(siteId);
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public int getIndexedPageCount(int siteId) {
+        return pageRepository.getIndexedCountId(siteId);
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public int getLemmaCount() {
+        return lemmaRepository.getCountId();
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public int getLemmaCount(int siteId) {
+        return lemmaRepository.getCountBySiteId(siteId);
     }
 
+    @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public Optional<Integer> getMaxFrequency() {
+        return Optional.ofNullable(lemmaRepository.getMaxFrequency());
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public List<Lemma> findActiveLemmas(String lemma) {
+        return lemmaRepository.findActiveByLemma(lemma);
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public List<Lemma> findLemmas(String lemma, int siteId) {
+        return lemmaRepository.findAllByLemmaAndSiteId(lemma, siteId);
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public List<Page> findPagesByLemma(int lemmaId) {
+        return pageRepository.findAllById(searchIndexRepository.findPageIdsByLemma(lemmaId));
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public Optional<SearchIndex> findIndex(int pageId, int lemmaId) {
+        return searchIndexRepository.findByLemmaId(pageId, lemmaId);
+    }
+
+    @Override
     @Transactional(isolation = Isolation.SERIALIZABLE)
-    public void saveIndex(Map<Page, Set<Lemma>> lemmaMap) {
-        Set<SearchIndex> indexSet = Collections.synchronizedSet(new HashSet<>());
+    public Optional<Site> getSiteById(int id) {
+        return siteRepository.findById(id);
+    }
+
+    private void saveIndex(Map<Page, Set<Lemma>> lemmaMap) {
+        List<SearchIndex> indexList = new ArrayList<>();
 
         lemmaMap.forEach((page, lemmaSet) -> lemmaSet.forEach(lemma -> {
             SearchIndex index = new SearchIndex();
+            index.setSiteId(page.getSite().getId());
             index.setLemmaId(lemma.getId());
             index.setPageId(page.getId());
             index.setLemmaRank(lemma.getRank());
-            indexSet.add(index);
+            index.setPositions(PositionCodec.encode(lemma.getPositions()));
+            indexList.add(index);
         }));
 
-        searchIndexRepository.saveAllAndFlush(indexSet);
+        searchIndexJdbcRepository.insertAll(indexList);
     }
 }
@@ -0,0 +1,220 @@
+package searchengine.services;
+
+import searchengine.utils.WordTokenizer;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Разобранный поисковый запрос. Кроме отдельных слов поддерживаются точные фразы в кавычках
+ * ("война и мир") и близость слов (война NEAR/5 мир - слова не дальше пяти слов друг от друга).
+ */
+public class SearchQuery {
+    private static final Pattern NEAR_PATTERN = Pattern.compile("(\\S+)\\s+NEAR/(\\d+)\\s+(\\S+)",
+            Pattern.CASE_INSENSITIVE);
+
+    private final List<List<QueryTerm>> phrases = new ArrayList<>();
+    private final List<NearClause> nearClauses = new ArrayList<>();
+    private final List<QueryTerm> terms = new ArrayList<>();
+
+    /**
+     * @param offset позиция слова внутри фразы с учетом служебных слов
+     * @param lemmas возможные нормальные формы слова
+     */
+    public record QueryTerm(int offset, Set<String> lemmas) {
+    }
+
+    public record NearClause(QueryTerm left, QueryTerm right, int distance) {
+    }
+
+    /**
+     * @param start          позиция первого слова найденного фрагмента или -1, если позиции не сохранены
+     * @param end            позиция последнего слова найденного фрагмента
+     * @param proximityBoost множитель релевантности: чем ближе слова запроса друг к другу, тем он больше
+     * @param termPositions  отсортированные позиции всех слов запроса на странице
+     */
+    public record QueryMatch(int start, int end, double proximityBoost, int[] termPositions) {
+        public boolean hasPositions() {
+            return start >= 0;
+        }
+    }
+
+    public static SearchQuery parse(String query) {
+        SearchQuery searchQuery = new SearchQuery();
+
+        String[] parts = query.split("\"", -1);
+        StringBuilder plainText = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            boolean isPhrase = i % 2 == 1 && i < parts.length - 1;
+            if (isPhrase) {
+                List<QueryTerm> phrase = makeTerms(parts[i]);
+                if (!phrase.isEmpty()) {
+                    searchQuery.phrases.add(phrase);
+                    searchQuery.terms.addAll(phrase);
+                }
+            } else {
+                plainText.append(parts[i]).append(' ');
+            }
+        }
+
+        Matcher matcher = NEAR_PATTERN.matcher(plainText);
+        while (matcher.find()) {
+            List<QueryTerm> left = makeTerms(matcher.group(1));
+            List<QueryTerm> right = makeTerms(matcher.group(3));
+            if (!left.isEmpty() && !right.isEmpty()) {
+                searchQuery.nearClauses.add(new NearClause(left.get(left.size() - 1), right.get(0),
+                        Integer.parseInt(matcher.group(2))));
+            }
+        }
+        searchQuery.terms.addAll(makeTerms(plainText.toString()));
+
+        return searchQuery;
+    }
+
+    public boolean hasPositionalClauses() {
+        return !phrases.isEmpty() || !nearClauses.isEmpty();
+    }
+
+    /**
+     * Проверяет фразы и условия близости по позициям лемм страницы.
+     *
+     * @param lemmaPositions позиции лемм запроса на странице
+     * @return пустое значение, если страница не содержит фразу или слова стоят недостаточно близко
+     */
+    public Optional<QueryMatch> match(Map<String, int[]> lemmaPositions) {
+        boolean hasPositions = lemmaPositions.values().stream().anyMatch(positions -> positions.length > 0);
+        if (!hasPositions) {
+            return hasPositionalClauses() ? Optional.empty() : Optional.of(new QueryMatch(-1, -1, 1.0, new int[0]));
+        }
+
+        int[] window = null;
+        for (List<QueryTerm> phrase : phrases) {
+            int[] phraseWindow = findPhrase(phrase, lemmaPositions);
+            if (phraseWindow == null) {
+                return Optional.empty();
+            }
+            window = window == null ? phraseWindow : window;
+        }
+        for (NearClause nearClause : nearClauses) {
+            int[] nearWindow = findClosestPair(getPositions(nearClause.left(), lemmaPositions),
+                    getPositions(nearClause.right(), lemmaPositions));
+            if (nearWindow == null || nearWindow[1] - nearWindow[0] > nearClause.distance()) {
+                return Optional.empty();
+            }
+            window = window == null ? nearWindow : window;
+        }
+
+        int[] closestTerms = findClosestTerms(lemmaPositions);
+        if (window == null) {
+            window = closestTerms;
+        }
+        int gap = closestTerms[1] - closestTerms[0];
+        double proximityBoost = gap > 0 ? 1.0 + 1.0 / gap : 1.0;
+
+        int[] termPositions = lemmaPositions.values().stream()
+                .flatMapToInt(Arrays::stream)
+                .sorted()
+                .distinct()
+                .toArray();
+
+        return Optional.of(new QueryMatch(window[0], window[1], proximityBoost, termPositions));
+    }
+
+    private static List<QueryTerm> makeTerms(String text) {
+        List<QueryTerm> terms = new ArrayList<>();
+        WordTokenizer.forEachWord(text, (word, position) -> {
+            Set<String> lemmas = new HashSet<>();
+            LemmaService.getWordLemmas(word).stream()
+                    .filter(lemma -> lemma.length() >= LemmaService.MIN_LEMMA_LENGTH)
+                    .forEach(lemmas::add);
+            if (!lemmas.isEmpty()) {
+                terms.add(new QueryTerm(position, lemmas));
+            }
+        });
+        return terms;
+    }
+
+    private static int[] getPositions(QueryTerm term, Map<String, int[]> lemmaPositions) {
+        return term.lemmas().stream()
+                .map(lemma -> lemmaPositions.getOrDefault(lemma, new int[0]))
+                .flatMapToInt(Arrays::stream)
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+
+    /**
+     * @return позиции первого и последнего слова первого вхождения фразы или null
+     */
+    private static int[] findPhrase(List<QueryTerm> phrase, Map<String, int[]> lemmaPositions) {
+        List<int[]> termPositions = phrase.stream().map(term -> getPositions(term, lemmaPositions)).toList();
+        QueryTerm first = phrase.get(0);
+        QueryTerm last = phrase.get(phrase.size() - 1);
+
+        for (int firstPosition : termPositions.get(0)) {
+            int phraseStart = firstPosition - first.offset();
+            boolean matches = true;
+            for (int i = 1; i < phrase.size() && matches; i++) {
+                matches = Arrays.binarySearch(termPositions.get(i), phraseStart + phrase.get(i).offset()) >= 0;
+            }
+            if (matches) {
+                return new int[]{firstPosition, phraseStart + last.offset()};
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return ближайшая пара позиций из двух отсортированных списков (меньшая позиция первой) или null
+     */
+    private static int[] findClosestPair(int[] first, int[] second) {
+        int[] closest = null;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            int left = Math.min(first[i], second[j]);
+            int right = Math.max(first[i], second[j]);
+            if (closest == null || right - left < closest[1] - closest[0]) {
+                closest = new int[]{left, right};
+            }
+            if (first[i] < second[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * @return ближайшая пара позиций разных слов запроса или позиция первого найденного слова
+     */
+    private int[] findClosestTerms(Map<String, int[]> lemmaPositions) {
+        List<int[]> positionsByTerm = terms.stream()
+                .map(term -> getPositions(term, lemmaPositions))
+                .filter(positions -> positions.length > 0)
+                .toList();
+
+        int[] closest = null;
+        for (int i = 0; i < positionsByTerm.size(); i++) {
+            for (int j = i + 1; j < positionsByTerm.size(); j++) {
+                int[] pair = findClosestPair(positionsByTerm.get(i), positionsByTerm.get(j));
+                if (pair != null && pair[1] > pair[0]
+                        && (closest == null || pair[1] - pair[0] < closest[1] - closest[0])) {
+                    closest = pair;
+                }
+            }
+        }
+        if (closest != null) {
+            return closest;
+        }
+
+        int firstPosition = lemmaPositions.values().stream()
+                .filter(positions -> positions.length > 0)
+                .mapToInt(positions -> positions[0])
+                .min()
+                .orElse(0);
+        return new int[]{firstPosition, firstPosition};
+    }
+}
@@ -1,8 +1,6 @@
 package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
-import org.jsoup.Jsoup;
-import org.jsoup.select.Elements;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import searchengine.dto.response.ErrorResponse;
@@ -13,23 +11,29 @@ import searchengine.models.Lemma;
 import searchengine.models.Page;
 import searchengine.models.SearchIndex;
 import searchengine.models.Site;
-import searchengine.repositoies.SearchIndexRepository;
+import searchengine.storage.IndexStorage;
+import searchengine.utils.PositionCodec;
+import searchengine.utils.WordTokenizer;
 
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Service
 @RequiredArgsConstructor
 public class SearchingService {
-    private final RepositoryService repositoryService;
+    private static final int SNIPPET_CONTEXT_WORDS = 15;
+    private final IndexStorage indexStorage;
     private final AtomicInteger siteId = new AtomicInteger(-1);
 
+    private record PageMatch(Page page, List<Lemma> lemmaList, float absRelevance, SearchQuery.QueryMatch match) {
+    }
+
     public Response searchText(String query, String url, int offset, int limit) {
         if (!isValidQuery(query)) {
             return new ErrorResponse("Задан пустой поисковый запрос");
@@ -46,7 +50,7 @@ public class SearchingService {
                     .toList();
 
             List<SearchingDto> searchingItemList = makeDetailedSearchingItem(uniquePageList, lemmaSortedList,
-                    repositoryService, query);
+                    indexStorage, query);
 
             List<SearchingDto> sortedSearchingItemList = searchingItemList.stream()
                     .sorted(Comparator.comparingDouble(SearchingDto::getRelevance).reversed())
@@ -67,12 +71,7 @@ public class SearchingService {
     }
 
     private void updatePageList(List<Page> pageList, Lemma lemma) {
-        pageList.addAll(repositoryService.getSearchIndexRepository().findPageIdsByLemma(lemma.getId())
-                .stream()
-                .map(pageId -> repositoryService.getPageRepository().findById(pageId))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .toList());
+        pageList.addAll(indexStorage.findPagesByLemma(lemma.getId()));
     }
 
     private boolean isValidQuery(String query) {
@@ -80,46 +79,67 @@ public class SearchingService {
             return false;
         }
 
-        return repositoryService.getLemmaRepository().getCountId() != 0 &&
-                repositoryService.getSiteRepository().getCountId() != 0;
+        return indexStorage.getLemmaCount() != 0 && indexStorage.getSiteCount() != 0;
     }
 
     private List<SearchingDto> makeDetailedSearchingItem(List<Page> uniquePageList, List<Lemma> lemmaSortedList,
-                                                         RepositoryService repositoryService, String query) {
-        List<SearchingDto> searchingResult = new ArrayList<>();
-        float maxRel = getMaxRelevance(uniquePageList, lemmaSortedList, repositoryService.getSearchIndexRepository());
+                                                         IndexStorage indexStorage, String query) {
+        SearchQuery searchQuery = SearchQuery.parse(query);
+        List<PageMatch> pageMatchList = new ArrayList<>();
 
         uniquePageList.forEach(page -> {
             List<Lemma> lemmaList = new ArrayList<>();
-            SearchingDto searchingItem = new SearchingDto();
-            AtomicReference<Float> absRelevance = new AtomicReference<>(0.0f);
+            Map<String, int[]> lemmaPositions = new HashMap<>();
+            float absRelevance = 0.0f;
+
+            for (Lemma lemma : lemmaSortedList) {
+                Optional<SearchIndex> index = getIndexByLemmaId(page.getId(), lemma.getId());
+                if (index.isPresent()) {
+                    absRelevance += index.get().getLemmaRank();
+                    lemmaList.add(lemma);
+                    lemmaPositions.merge(lemma.getLemma(), PositionCodec.decode(index.get().getPositions()),
+                            (first, second) -> IntStream.concat(Arrays.stream(first), Arrays.stream(second))
+                                    .sorted().distinct().toArray());
+                }
+            }
+
+            float relevance = absRelevance;
+            searchQuery.match(lemmaPositions).ifPresent(match -> pageMatchList.add(
+                    new PageMatch(page, lemmaList, (float) (relevance * match.proximityBoost()), match)));
+        });
+
+        float maxRel = (float) pageMatchList.stream().mapToDouble(PageMatch::absRelevance).max().orElse(0.0);
 
-            lemmaSortedList.forEach(lemma -> getIndexByLemmaId(page.getId(), lemma.getId())
-                    .ifPresent(searchIndex -> {
-                        absRelevance.set(absRelevance.get() + searchIndex.getLemmaRank());
-                        lemmaList.add(lemma);
-                    }));
+        List<SearchingDto> searchingResult = new ArrayList<>();
+        pageMatchList.forEach(pageMatch -> {
+            Page page = pageMatch.page();
+            SearchingDto searchingItem = new SearchingDto();
 
             DecimalFormat decimalFormat = new DecimalFormat("#.##");
             float relRelevance = Float.parseFloat(decimalFormat
-                    .format(absRelevance.get() / maxRel).replaceAll(",", ".")
+                    .format(pageMatch.absRelevance() / maxRel).replaceAll(",", ".")
             );
 
             searchingItem.setRelevance(relRelevance);
             searchingItem.setUri(page.getPath());
-            searchingItem.setTitle(Jsoup.parse(page.getContext()).title());
+            searchingItem.setTitle(page.getTitle());
 
             String snippet = "";
             try {
-                snippet = makeSnippet(page, query);
+                Optional<String> pageText = indexStorage.getPageText(page);
+                if (pageText.isPresent()) {
+                    snippet = pageMatch.match().hasPositions() ?
+                            makePositionalSnippet(pageText.get(), pageMatch.match()) :
+                            makeSnippet(pageText.get(), query);
+                }
             } catch (IOException e) {
                 e.printStackTrace();
             }
 
             if (!snippet.equals("")) {
                 searchingItem.setSnippet(snippet);
-                searchingItem.setSite(lemmaList.get(0).getSite().getUrl());
-                searchingItem.setSiteName(lemmaList.get(0).getSite().getName());
+                searchingItem.setSite(pageMatch.lemmaList().get(0).getSite().getUrl());
+                searchingItem.setSiteName(pageMatch.lemmaList().get(0).getSite().getName());
                 searchingResult.add(searchingItem);
             }
         });
@@ -127,32 +147,54 @@ public class SearchingService {
         return searchingResult;
     }
 
-    private float getMaxRelevance(List<Page> uniquePageList, List<Lemma> lemmaSortedList,
-                                  SearchIndexRepository searchIndexRepository) {
-        List<Float> absRelevanceList = new ArrayList<>();
-        uniquePageList.forEach(page -> {
-            AtomicReference<Float> absRelevance = new AtomicReference<>(0.0f);
-            lemmaSortedList.forEach(lemma -> {
-                Optional<SearchIndex> index = searchIndexRepository.findByLemmaId(page.getId(), lemma.getId());
-                index.ifPresent(searchIndex -> absRelevance.set(absRelevance.get() + searchIndex.getLemmaRank()));
-            });
-            absRelevanceList.add(absRelevance.get());
+    private Optional<SearchIndex> getIndexByLemmaId(Integer pageId, Integer lemmaId) {
+        return indexStorage.findIndex(pageId, lemmaId);
+    }
+
+    /**
+     * Строит сниппет по сохраненным позициям слов: берет окно вокруг найденного фрагмента
+     * и выделяет все слова запроса внутри окна.
+     */
+    private String makePositionalSnippet(String text, SearchQuery.QueryMatch match) {
+        int firstWord = Math.max(0, match.start() - SNIPPET_CONTEXT_WORDS);
+        int lastWord = match.end() + SNIPPET_CONTEXT_WORDS;
+        int[] bounds = {-1, -1};
+        List<int[]> highlights = new ArrayList<>();
+
+        WordTokenizer.forEachWordBounds(text, (position, start, end) -> {
+            if (position == firstWord) {
+                bounds[0] = start;
+            }
+            if (position >= firstWord && Arrays.binarySearch(match.termPositions(), position) >= 0) {
+                highlights.add(new int[]{start, end});
+            }
+            bounds[1] = end;
+            return position < lastWord;
         });
 
-        OptionalDouble optionalDouble = absRelevanceList.stream().mapToDouble(Float::floatValue).max();
-        float maxRel = 0.0f;
-        if ((optionalDouble.isPresent())) {
-            maxRel = (float) optionalDouble.getAsDouble();
+        if (bounds[0] < 0 || highlights.isEmpty()) {
+            return "";
         }
 
-        return maxRel;
-    }
+        StringBuilder snippet = new StringBuilder();
+        if (bounds[0] > 0) {
+            snippet.append(" . . . ");
+        }
+        int current = bounds[0];
+        for (int[] highlight : highlights) {
+            snippet.append(text, current, highlight[0])
+                    .append("<b>").append(text, highlight[0], highlight[1]).append("</b>");
+            current = highlight[1];
+        }
+        snippet.append(text, current, bounds[1]);
+        if (bounds[1] < text.length()) {
+            snippet.append(" . . . ");
+        }
 
-    private Optional<SearchIndex> getIndexByLemmaId(Integer pageId, Integer lemmaId) {
-        return repositoryService.getSearchIndexRepository().findByLemmaId(pageId, lemmaId);
+        return snippet.toString();
     }
 
-    private String makeSnippet(Page page, String query) throws IOException {
+    private String makeSnippet(String text, String query) throws IOException {
         String[] queryStrArr = query.trim().split(" ");
         StringBuilder stringOriginalTextBuilder = new StringBuilder();
         StringBuilder stringTextWithoutEndingBuilder = new StringBuilder();
@@ -167,24 +209,23 @@ public class SearchingService {
         String regex = "(" + queryText + "|" + queryTextWithoutEnding + ")";
         Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
 
-        String pageText = page.getContext().replaceAll("ё", "е");
-        Elements elements = Jsoup.parse(pageText).body().getElementsMatchingOwnText(pattern);
+        String pageText = text.replaceAll("ё", "е");
 
         StringBuilder snippet = new StringBuilder();
-        Matcher matcher = pattern.matcher(elements.text());
+        Matcher matcher = pattern.matcher(pageText);
         if (matcher.find()) {
             int start = matcher.start();
             int end = matcher.end();
 
-            String targetQuery = elements.text().substring(start, end);
-            String textBefore = elements.text().substring(0, start);
-            String textAfter = elements.text().substring(end);
+            String targetQuery = pageText.substring(start, end);
+            String textBefore = pageText.substring(0, start);
+            String textAfter = pageText.substring(end);
 
             if (textBefore.length() > 100) {
-                textBefore = " . . . " + elements.text().substring(start - 100, start);
+                textBefore = " . . . " + pageText.substring(start - 100, start);
             }
             if (textAfter.length() > 100) {
-                textAfter = elements.text().substring(end, end + 100) + " . . . ";
+                textAfter = pageText.substring(end, end + 100) + " . . . ";
             }
 
             snippet.append(textBefore)
@@ -210,14 +251,14 @@ public class SearchingService {
     }
 
     private List<Lemma> getSortedLemmas(String query, String url) throws IOException {
-        final int frequencyLimit = Math.round(repositoryService.getLemmaRepository().getMaxFrequency());
+        final int frequencyLimit = indexStorage.getMaxFrequency().orElse(0);
         Set<String> queryLemmaSet = LemmaService.getLemmasFromQuery(query);
 
         if (!StringUtils.hasLength(url)) {
             return getLemmasAllSites(queryLemmaSet, frequencyLimit);
         }
-        Optional<Site> optionalSite = repositoryService.getSiteRepository().findByUrl(url);
-        optionalSite.ifPresent(site -> siteId.set(site.getId()));
+        Optional<Site> optionalSite = indexStorage.getSite(url);
+        siteId.set(optionalSite.map(Site::getId).orElse(-1));
 
         return makeLemmaSetOneSite(queryLemmaSet, frequencyLimit);
     }
@@ -247,10 +288,10 @@ public class SearchingService {
     }
 
     private List<Lemma> getLemmas(String lemma) {
-        return repositoryService.getLemmaRepository().findByLemma(lemma);
+        return indexStorage.findActiveLemmas(lemma);
     }
 
     private List<Lemma> getLemmasByLemmaAndSiteId(String lemma, Integer siteId) {
-        return repositoryService.getLemmaRepository().findAllByLemmaAndSiteId(lemma, siteId);
+        return indexStorage.findLemmas(lemma, siteId);
     }
 }
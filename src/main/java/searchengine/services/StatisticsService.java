@@ -9,25 +9,19 @@ import searchengine.dto.statistics.DetailedStatistics;
 import searchengine.dto.statistics.StatisticsDto;
 import searchengine.dto.statistics.TotalStatisticsDto;
 import searchengine.models.Site;
-import searchengine.repositoies.LemmaRepository;
-import searchengine.repositoies.PageRepository;
-import searchengine.repositoies.SiteRepository;
+import searchengine.storage.IndexStorage;
 
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.List;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
 public class StatisticsService {
-    private final SiteRepository siteRepository;
-    private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
+    private final IndexStorage indexStorage;
     private final SitesListConfig sitesFromConfig;
 
     public Response getStatistics() {
         TotalStatisticsDto totalStatistic = new TotalStatisticsDto();
-        List<Site> foundSites = siteRepository.findAll();
+        List<Site> foundSites = getLatestGenerations();
         totalStatistic.setSites(foundSites.size());
         totalStatistic.setIndexing(true);
 
@@ -47,6 +41,16 @@ public class StatisticsService {
         return new StatisticsResponse(statisticsDto);
     }
 
+    /**
+     * @return по одному поколению индекса на сайт: строящееся, если обход идет, иначе активное
+     */
+    private List<Site> getLatestGenerations() {
+        Map<String, Site> latestGenerations = new LinkedHashMap<>();
+        indexStorage.getAllSites().forEach(site -> latestGenerations.merge(site.getUrl(), site,
+                (first, second) -> first.getId() > second.getId() ? first : second));
+        return new ArrayList<>(latestGenerations.values());
+    }
+
     private List<DetailedStatistics> getEmptyStatistic(TotalStatisticsDto total) {
         List<DetailedStatistics> detailed = new ArrayList<>();
 
@@ -78,10 +82,10 @@ public class StatisticsService {
             itemSite.setName(site.getName());
             itemSite.setUrl(site.getUrl());
 
-            int pages = pageRepository.getCountId(site.getId());
+            int pages = indexStorage.getPageCount(site.getId());
             itemSite.setPages(pages);
 
-            int lemmas = lemmaRepository.getCountBySiteId(site.getId());
+            int lemmas = indexStorage.getLemmaCount(site.getId());
             itemSite.setLemmas(lemmas);
 
             itemSite.setStatus(site.getStatus().toString());
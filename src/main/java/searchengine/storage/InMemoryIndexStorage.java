@@ -0,0 +1,499 @@
+package searchengine.storage;
+
+import org.apache.log4j.Logger;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import searchengine.enums.Status;
+import searchengine.models.Lemma;
+import searchengine.models.Page;
+import searchengine.models.SearchIndex;
+import searchengine.models.Site;
+import searchengine.services.IndexingService;
+import searchengine.task.CrawlUrl;
+import searchengine.utils.ContentCodec;
+import searchengine.utils.PositionCodec;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Тестовое хранилище индекса в памяти процесса для интеграционных тестов, замеров производительности
+ * и запуска без базы данных. Ничего не сохраняет на диск: индекс и контрольные точки обхода теряются
+ * при остановке приложения, поэтому возобновить обход после перезапуска с ним нельзя.
+ * <p>
+ * Запись идет под общей блокировкой записи, чтение - под блокировкой чтения. Запись страниц атомарна:
+ * при ошибке все изменения группы отменяются по журналу, и поиск не видит частично записанных страниц.
+ */
+@Service
+@ConditionalOnProperty(name = "storage.type", havingValue = "memory")
+public class InMemoryIndexStorage implements IndexStorage {
+    private static final Logger log = Logger.getLogger(IndexingService.class);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicInteger siteIds = new AtomicInteger();
+    private final AtomicInteger pageIds = new AtomicInteger();
+    private final AtomicInteger lemmaIds = new AtomicInteger();
+    private final AtomicInteger indexIds = new AtomicInteger();
+
+    private final Map<Integer, Site> sites = new HashMap<>();
+    private final Map<Integer, Page> pages = new HashMap<>();
+    private final Map<Integer, byte[]> pageTexts = new HashMap<>();
+    private final Map<Integer, byte[]> pageHtmls = new HashMap<>();
+    private final Map<Integer, Map<String, Integer>> pageIdsBySite = new HashMap<>();
+    private final Map<Integer, Map<String, Lemma>> lemmasBySite = new HashMap<>();
+    private final Map<Integer, Lemma> lemmas = new HashMap<>();
+    private final Map<Integer, Map<Integer, SearchIndex>> indexesByLemma = new HashMap<>();
+    private final Map<Integer, Set<Integer>> lemmaIdsByPage = new HashMap<>();
+    private final Map<Integer, List<CrawlUrl>> checkpoints = new HashMap<>();
+
+    @Override
+    public Optional<Site> getSite(String url) {
+        return read(() -> sites.values().stream()
+                .filter(site -> site.getActive() && site.getUrl().equals(url))
+                .findFirst());
+    }
+
+    @Override
+    public Optional<Site> getBuildingSite(String url) {
+        return read(() -> getInactiveGenerations(url).stream().findFirst());
+    }
+
+    @Override
+    public Optional<Site> getSiteById(int id) {
+        return read(() -> Optional.ofNullable(sites.get(id)));
+    }
+
+    @Override
+    public List<Site> getAllSites() {
+        return read(() -> new ArrayList<>(sites.values()));
+    }
+
+    @Override
+    public int getSiteCount() {
+        return read(sites::size);
+    }
+
+    @Override
+    public void saveNewSite(Site site) {
+        write(() -> {
+            if (site.getId() == null) {
+                site.setId(siteIds.incrementAndGet());
+            }
+            site.setStatus(Status.INDEXING);
+            site.setStatusTime(new Date());
+            site.setLastError(null);
+            sites.put(site.getId(), site);
+        });
+    }
+
+    @Override
+    public void saveNewGeneration(Site site) {
+        write(() -> {
+            List<Site> staleGenerations = getInactiveGenerations(site.getUrl());
+            site.setActive(false);
+            saveNewSite(site);
+            staleGenerations.forEach(this::dropGeneration);
+        });
+    }
+
+    @Override
+    public void activateGeneration(Site site) {
+        write(() -> {
+            Optional<Site> previousGeneration = sites.values().stream()
+                    .filter(activeSite -> activeSite.getActive() && activeSite.getUrl().equals(site.getUrl())
+                            && !activeSite.getId().equals(site.getId()))
+                    .findFirst();
+
+            site.setActive(true);
+            site.setStatus(Status.INDEXED);
+            site.setStatusTime(new Date());
+            sites.put(site.getId(), site);
+
+            previousGeneration.ifPresent(this::dropGeneration);
+        });
+    }
+
+    @Override
+    public void saveSiteWithLastErrorIndexing(Site site, int statusCode, String message) {
+        write(() -> {
+            if (sites.containsKey(site.getId())) {
+                site.setLastError("Ошибка подключения. Код ошибки - " + statusCode + " Причина: " + message);
+                site.setStatusTime(new Date());
+            }
+        });
+    }
+
+    @Override
+    public void stopIndexing() {
+        write(() -> List.copyOf(sites.values()).forEach(this::stopSiteIndexing));
+    }
+
+    @Override
+    public void stopSiteIndexing(Site site) {
+        write(() -> {
+            if (site.getStatus().equals(Status.INDEXING)) {
+                site.setStatus(Status.FAILED);
+                site.setLastError("Индексация остановлена пользователем");
+                site.setStatusTime(new Date());
+            }
+        });
+    }
+
+    @Override
+    public void failSiteIndexing(Site site, String message) {
+        write(() -> Optional.ofNullable(sites.get(site.getId())).ifPresent(existSite -> {
+            existSite.setStatus(Status.FAILED);
+            existSite.setLastError(message);
+            existSite.setStatusTime(new Date());
+        }));
+    }
+
+    @Override
+    public Map<String, PageVersion> getPageVersions(Site site) {
+        return read(() -> {
+            Map<String, PageVersion> pageVersions = new HashMap<>();
+            pageIdsBySite.getOrDefault(site.getId(), Map.of()).forEach((path, pageId) ->
+                    pageVersions.put(path, toPageVersion(pages.get(pageId))));
+            return pageVersions;
+        });
+    }
+
+    @Override
+    public int getPageCount(int siteId) {
+        return read(() -> pageIdsBySite.getOrDefault(siteId, Map.of()).size());
+    }
+
+    @Override
+    public int getIndexedPageCount(int siteId) {
+        return read(() -> (int) pageIdsBySite.getOrDefault(siteId, Map.of()).values().stream()
+                .filter(pageId -> pages.get(pageId).getCode() == 200)
+                .count());
+    }
+
+    @Override
+    public void savePage(Page page) {
+        writeAtomically(journal -> savePage(page, journal));
+    }
+
+    /**
+     * Сохраняет группу страниц целиком или, при ошибке, не сохраняет ни одной.
+     */
+    @Override
+    public void storePages(List<Page> pageList) {
+        writeAtomically(journal -> pageList.forEach(page -> {
+            if (page.getId() != null) {
+                removePageIndex(page.getId(), journal);
+            }
+            savePage(page, journal);
+            if (page.getDuplicateOf() == null && page.getLemmas() != null) {
+                savePageIndex(page, journal);
+            }
+        }));
+    }
+
+    @Override
+    public Optional<String> getPageText(Page page) {
+        return read(() -> Optional.ofNullable(pageTexts.get(page.getId())).map(ContentCodec::decompress));
+    }
+
+    @Override
+    public Optional<String> getPageHtml(int pageId) {
+        return read(() -> Optional.ofNullable(pageHtmls.get(pageId)).map(ContentCodec::decompress));
+    }
+
+    @Override
+    public void removePageIndex(int pageId) {
+        writeAtomically(journal -> removePageIndex(pageId, journal));
+    }
+
+    @Override
+    public int getLemmaCount() {
+        return read(lemmas::size);
+    }
+
+    @Override
+    public int getLemmaCount(int siteId) {
+        return read(() -> lemmasBySite.getOrDefault(siteId, Map.of()).size());
+    }
+
+    @Override
+    public Optional<Integer> getMaxFrequency() {
+        return read(() -> lemmas.values().stream()
+                .filter(lemma -> lemma.getSite().getActive())
+                .map(Lemma::getFrequency)
+                .max(Integer::compare));
+    }
+
+    @Override
+    public List<Lemma> findActiveLemmas(String lemma) {
+        return read(() -> sites.values().stream()
+                .filter(Site::getActive)
+                .map(site -> lemmasBySite.getOrDefault(site.getId(), Map.of()).get(lemma))
+                .filter(Objects::nonNull)
+                .toList());
+    }
+
+    @Override
+    public List<Lemma> findLemmas(String lemma, int siteId) {
+        return read(() -> Optional.ofNullable(lemmasBySite.getOrDefault(siteId, Map.of()).get(lemma))
+                .stream()
+                .toList());
+    }
+
+    @Override
+    public List<Page> findPagesByLemma(int lemmaId) {
+        return read(() -> indexesByLemma.getOrDefault(lemmaId, Map.of()).keySet().stream()
+                .map(pages::get)
+                .toList());
+    }
+
+    @Override
+    public Optional<SearchIndex> findIndex(int pageId, int lemmaId) {
+        return read(() -> Optional.ofNullable(indexesByLemma.getOrDefault(lemmaId, Map.of()).get(pageId)));
+    }
+
+    /**
+     * Частоты лемм меняются сразу при записи страницы, накапливать нечего.
+     */
+    @Override
+    public void flushLemmaFrequencies(Site site) {
+    }
+
+    @Override
+    public void releaseLemmaDictionary(Site site) {
+    }
+
+    @Override
+    public void deleteUnusedLemmas(Site site) {
+        write(() -> {
+            Map<String, Lemma> siteLemmas = lemmasBySite.getOrDefault(site.getId(), new HashMap<>());
+            siteLemmas.values().removeIf(lemma -> {
+                if (lemma.getFrequency() > 0) {
+                    return false;
+                }
+                lemmas.remove(lemma.getId());
+                indexesByLemma.remove(lemma.getId());
+                return true;
+            });
+        });
+    }
+
+    @Override
+    public void saveCheckpoint(Site site, List<CrawlUrl> pendingUrls) {
+        write(() -> checkpoints.put(site.getId(), List.copyOf(pendingUrls)));
+    }
+
+    @Override
+    public Optional<List<CrawlUrl>> getCheckpoint(Site site) {
+        return read(() -> Optional.ofNullable(checkpoints.get(site.getId())));
+    }
+
+    @Override
+    public void deleteCheckpoint(Site site) {
+        write(() -> checkpoints.remove(site.getId()));
+    }
+
+    private void savePage(Page page, Journal journal) {
+        Map<String, Integer> sitePageIds = pageIdsBySite.computeIfAbsent(page.getSite().getId(),
+                siteId -> new HashMap<>());
+        Integer existingId = sitePageIds.get(page.getPath());
+        if (existingId != null && !existingId.equals(page.getId())) {
+            throw new IllegalStateException("Страница " + page.getPath() + " уже сохранена");
+        }
+
+        if (page.getId() == null) {
+            page.setId(pageIds.incrementAndGet());
+            journal.onRollback(() -> page.setId(null));
+        }
+        journal.put(pages, page.getId(), copyPage(page));
+        journal.put(sitePageIds, page.getPath(), page.getId());
+
+        if (page.getContext() != null) {
+            journal.put(pageHtmls, page.getId(), ContentCodec.compress(page.getContext()));
+            journal.put(pageTexts, page.getId(), ContentCodec.compress(page.getText()));
+        } else {
+            journal.remove(pageHtmls, page.getId());
+            journal.remove(pageTexts, page.getId());
+        }
+    }
+
+    private void removePageIndex(int pageId, Journal journal) {
+        Set<Integer> pageLemmaIds = lemmaIdsByPage.get(pageId);
+        if (pageLemmaIds == null) {
+            return;
+        }
+
+        journal.remove(lemmaIdsByPage, pageId);
+        pageLemmaIds.forEach(lemmaId -> {
+            journal.addFrequency(lemmas.get(lemmaId), -1);
+            journal.remove(indexesByLemma.get(lemmaId), pageId);
+        });
+    }
+
+    private void savePageIndex(Page page, Journal journal) {
+        Site site = page.getSite();
+        Map<String, Lemma> siteLemmas = lemmasBySite.computeIfAbsent(site.getId(), siteId -> new HashMap<>());
+        Set<Integer> pageLemmaIds = new HashSet<>();
+
+        page.getLemmas().forEach((word, positions) -> {
+            Lemma lemma = siteLemmas.get(word);
+            if (lemma == null) {
+                lemma = new Lemma();
+                lemma.setId(lemmaIds.incrementAndGet());
+                lemma.setSite(site);
+                lemma.setLemma(word);
+                lemma.setFrequency(0);
+                journal.put(siteLemmas, word, lemma);
+                journal.put(lemmas, lemma.getId(), lemma);
+            }
+            journal.addFrequency(lemma, 1);
+
+            SearchIndex index = new SearchIndex();
+            index.setId(indexIds.incrementAndGet());
+            index.setSiteId(site.getId());
+            index.setPageId(page.getId());
+            index.setLemmaId(lemma.getId());
+            index.setLemmaRank((float) positions.length);
+            index.setPositions(PositionCodec.encode(positions));
+            journal.put(indexesByLemma.computeIfAbsent(lemma.getId(), lemmaId -> new HashMap<>()), page.getId(),
+                    index);
+            pageLemmaIds.add(lemma.getId());
+        });
+
+        journal.put(lemmaIdsByPage, page.getId(), pageLemmaIds);
+    }
+
+    private List<Site> getInactiveGenerations(String url) {
+        return sites.values().stream()
+                .filter(site -> !site.getActive() && site.getUrl().equals(url))
+                .sorted(Comparator.comparing(Site::getId).reversed())
+                .toList();
+    }
+
+    private void dropGeneration(Site generation) {
+        int siteId = generation.getId();
+        Map<String, Integer> sitePageIds = pageIdsBySite.remove(siteId);
+        if (sitePageIds != null) {
+            sitePageIds.values().forEach(pageId -> {
+                pages.remove(pageId);
+                pageTexts.remove(pageId);
+                pageHtmls.remove(pageId);
+                lemmaIdsByPage.remove(pageId);
+            });
+        }
+
+        Map<String, Lemma> siteLemmas = lemmasBySite.remove(siteId);
+        if (siteLemmas != null) {
+            siteLemmas.values().forEach(lemma -> {
+                lemmas.remove(lemma.getId());
+                indexesByLemma.remove(lemma.getId());
+            });
+        }
+
+        checkpoints.remove(siteId);
+        sites.remove(siteId);
+        log.info("Удалено старое поколение индекса сайта " + generation.getUrl() + " (" + siteId + ")");
+    }
+
+    /**
+     * Сохраняет страницу без содержимого и лемм: текст хранится отдельно в сжатом виде.
+     */
+    private static Page copyPage(Page page) {
+        Page storedPage = new Page();
+        storedPage.setId(page.getId());
+        storedPage.setSite(page.getSite());
+        storedPage.setPath(page.getPath());
+        storedPage.setCode(page.getCode());
+        storedPage.setTitle(page.getTitle());
+        storedPage.setEtag(page.getEtag());
+        storedPage.setLastModified(page.getLastModified());
+        storedPage.setContentHash(page.getContentHash());
+        storedPage.setSimHash(page.getSimHash());
+        storedPage.setDuplicateOf(page.getDuplicateOf());
+        return storedPage;
+    }
+
+    private <T> T read(Supplier<T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Runnable writer) {
+        lock.writeLock().lock();
+        try {
+            writer.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Выполняет запись под блокировкой записи. Если запись не удалась, отменяет все ее изменения.
+     */
+    private void writeAtomically(Consumer<Journal> writer) {
+        lock.writeLock().lock();
+        Journal journal = new Journal();
+        try {
+            writer.accept(journal);
+        } catch (RuntimeException e) {
+            journal.rollback();
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Журнал изменений одной записи: отменяет их в обратном порядке.
+     */
+    private static class Journal {
+        private final Deque<Runnable> undoActions = new ArrayDeque<>();
+
+        <K, V> void put(Map<K, V> map, K key, V value) {
+            boolean existed = map.containsKey(key);
+            V previous = map.put(key, value);
+            undoActions.push(() -> {
+                if (existed) {
+                    map.put(key, previous);
+                } else {
+                    map.remove(key);
+                }
+            });
+        }
+
+        <K, V> void remove(Map<K, V> map, K key) {
+            if (map.containsKey(key)) {
+                V previous = map.remove(key);
+                undoActions.push(() -> map.put(key, previous));
+            }
+        }
+
+        void addFrequency(Lemma lemma, int increment) {
+            lemma.setFrequency(lemma.getFrequency() + increment);
+            undoActions.push(() -> lemma.setFrequency(lemma.getFrequency() - increment));
+        }
+
+        void onRollback(Runnable undoAction) {
+            undoActions.push(undoAction);
+        }
+
+        void rollback() {
+            while (!undoActions.isEmpty()) {
+                undoActions.pop().run();
+            }
+        }
+    }
+
+    private static PageVersion toPageVersion(Page page) {
+        return new PageVersion(page.getId(), page.getPath(), page.getCode(), page.getEtag(), page.getLastModified(),
+                page.getContentHash(), page.getSimHash(), page.getDuplicateOf());
+    }
+}
@@ -0,0 +1,126 @@
+package searchengine.storage;
+
+import searchengine.models.Lemma;
+import searchengine.models.Page;
+import searchengine.models.SearchIndex;
+import searchengine.models.Site;
+import searchengine.task.CrawlUrl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Хранилище поискового индекса: сайты и их поколения, страницы, леммы, записи индекса и контрольные точки обхода.
+ * Реализация выбирается параметром storage.type: jpa (MySQL, по умолчанию) или memory (в памяти процесса,
+ * для тестов и замеров).
+ */
+public interface IndexStorage {
+    /**
+     * @return активное поколение индекса сайта
+     */
+    Optional<Site> getSite(String url);
+
+    /**
+     * @return последнее неактивное поколение индекса сайта, которое строится или не было достроено
+     */
+    Optional<Site> getBuildingSite(String url);
+
+    Optional<Site> getSiteById(int id);
+
+    List<Site> getAllSites();
+
+    int getSiteCount();
+
+    /**
+     * Отмечает сайт как индексируемый и сохраняет его.
+     */
+    void saveNewSite(Site site);
+
+    /**
+     * Сохраняет новое неактивное поколение индекса сайта и удаляет прежние неактивные поколения этого адреса.
+     */
+    void saveNewGeneration(Site site);
+
+    /**
+     * Переключает поиск на поколение индекса сайта и удаляет прежнее активное поколение.
+     */
+    void activateGeneration(Site site);
+
+    void saveSiteWithLastErrorIndexing(Site site, int statusCode, String message);
+
+    void stopIndexing();
+
+    void stopSiteIndexing(Site site);
+
+    /**
+     * Отмечает неудачный обход поколения индекса сайта. Активное поколение при этом не меняется.
+     */
+    void failSiteIndexing(Site site, String message);
+
+    Map<String, PageVersion> getPageVersions(Site site);
+
+    int getPageCount(int siteId);
+
+    /**
+     * @return количество успешно загруженных (код 200) страниц поколения индекса сайта
+     */
+    int getIndexedPageCount(int siteId);
+
+    void savePage(Page page);
+
+    /**
+     * Сохраняет группу разобранных страниц вместе с их леммами и индексом.
+     */
+    void storePages(List<Page> pages);
+
+    Optional<String> getPageText(Page page);
+
+    /**
+     * @return сохраненный HTML страницы; у дубликатов и страниц с ошибкой его нет
+     */
+    Optional<String> getPageHtml(int pageId);
+
+    /**
+     * Удаляет индекс страницы и уменьшает частоты ее лемм.
+     */
+    void removePageIndex(int pageId);
+
+    int getLemmaCount();
+
+    int getLemmaCount(int siteId);
+
+    /**
+     * @return наибольшая частота леммы среди активных поколений
+     */
+    Optional<Integer> getMaxFrequency();
+
+    /**
+     * @return лемма во всех активных поколениях сайтов
+     */
+    List<Lemma> findActiveLemmas(String lemma);
+
+    List<Lemma> findLemmas(String lemma, int siteId);
+
+    List<Page> findPagesByLemma(int lemmaId);
+
+    Optional<SearchIndex> findIndex(int pageId, int lemmaId);
+
+    /**
+     * Сохраняет накопленные в памяти изменения частот лемм сайта.
+     */
+    void flushLemmaFrequencies(Site site);
+
+    /**
+     * Сохраняет накопленные частоты и освобождает ресурсы обхода сайта.
+     */
+    void releaseLemmaDictionary(Site site);
+
+    void deleteUnusedLemmas(Site site);
+
+    void saveCheckpoint(Site site, List<CrawlUrl> pendingUrls);
+
+    Optional<List<CrawlUrl>> getCheckpoint(Site site);
+
+    void deleteCheckpoint(Site site);
+}
@@ -0,0 +1,8 @@
+package searchengine.storage;
+
+/**
+ * Сохраненное состояние страницы, по которому повторный обход решает, изменилась ли она.
+ */
+public record PageVersion(Integer id, String path, Integer code, String etag, String lastModified,
+                          String contentHash, Long simHash, String duplicateOf) {
+}
@@ -0,0 +1,37 @@
+package searchengine.task;
+
+import searchengine.config.CrawlerConfig;
+import searchengine.config.SiteConfig;
+
+/**
+ * Ограничения обхода сайта. Нулевое значение означает отсутствие ограничения.
+ */
+public record CrawlBudget(int maxDepth, int maxPages, long maxDurationMillis) {
+    public static CrawlBudget of(SiteConfig siteConfig) {
+        return new CrawlBudget(siteConfig.getMaxDepth(), siteConfig.getMaxPages(),
+                siteConfig.getMaxDurationMinutes() * 60_000L);
+    }
+
+    /**
+     * Бюджет быстрой индексации: обходятся только неглубокие страницы, чтобы по ним можно было искать
+     * уже через несколько минут после запуска.
+     */
+    public static CrawlBudget quick(SiteConfig siteConfig, CrawlerConfig crawlerConfig) {
+        CrawlBudget budget = of(siteConfig);
+        return new CrawlBudget(min(budget.maxDepth(), crawlerConfig.getQuickIndexMaxDepth()),
+                min(budget.maxPages(), crawlerConfig.getQuickIndexMaxPages()), budget.maxDurationMillis());
+    }
+
+    public boolean allowsDepth(int depth) {
+        return maxDepth <= 0 || depth <= maxDepth;
+    }
+
+    public boolean isExceeded(int crawledPages, long elapsedMillis) {
+        return maxPages > 0 && crawledPages >= maxPages
+                || maxDurationMillis > 0 && elapsedMillis >= maxDurationMillis;
+    }
+
+    private static int min(int limit, int quickLimit) {
+        return limit <= 0 ? quickLimit : Math.min(limit, quickLimit);
+    }
+}
@@ -0,0 +1,108 @@
+package searchengine.task;
+
+import searchengine.config.UrlPatternWeight;
+import searchengine.utils.BloomFilter;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Очередь ссылок сайта. Первыми обходятся неглубокие страницы и страницы, подходящие под шаблоны с большим весом;
+ * при равном приоритете ссылки обходятся в порядке добавления.
+ */
+public class CrawlFrontier {
+    private static final double BLOOM_FILTER_FALSE_POSITIVE_RATE = 0.0001;
+
+    private final Set<String> visitedUrls;
+    private final BloomFilter visitedUrlsFilter;
+    private final List<WeightedPattern> urlPatternWeights;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Queue<Entry> pendingUrls = new PriorityBlockingQueue<>(64,
+            Comparator.comparingDouble(Entry::priority).thenComparingLong(Entry::sequence));
+
+    /**
+     * @param bloomFilterExpectedUrls ожидаемое число ссылок сайта. Если больше нуля, вместо точного множества
+     *                                используется фильтр Блума фиксированного размера (для очень больших сайтов)
+     * @param urlPatternWeights       веса шаблонов ссылок; вес 1 поднимает ссылку на один уровень глубины
+     */
+    public CrawlFrontier(int bloomFilterExpectedUrls, List<UrlPatternWeight> urlPatternWeights) {
+        if (bloomFilterExpectedUrls > 0) {
+            visitedUrls = null;
+            visitedUrlsFilter = new BloomFilter(bloomFilterExpectedUrls, BLOOM_FILTER_FALSE_POSITIVE_RATE);
+        } else {
+            visitedUrls = ConcurrentHashMap.newKeySet();
+            visitedUrlsFilter = null;
+        }
+
+        this.urlPatternWeights = urlPatternWeights.stream()
+                .map(item -> new WeightedPattern(Pattern.compile(item.getPattern()), item.getWeight()))
+                .toList();
+    }
+
+    /**
+     * Добавляет ссылку в очередь обхода, если она встретилась впервые.
+     *
+     * @return true, если ссылка добавлена в очередь
+     */
+    public boolean offer(CrawlUrl crawlUrl) {
+        if (!markVisited(crawlUrl.url())) {
+            return false;
+        }
+        pendingUrls.add(new Entry(crawlUrl, getPriority(crawlUrl), sequence.getAndIncrement()));
+        return true;
+    }
+
+    /**
+     * Возвращает в очередь уже посещенную ссылку, например для повторного запроса после временной ошибки.
+     */
+    public void requeue(CrawlUrl crawlUrl) {
+        pendingUrls.add(new Entry(crawlUrl, getPriority(crawlUrl), sequence.getAndIncrement()));
+    }
+
+    public CrawlUrl peek() {
+        Entry entry = pendingUrls.peek();
+        return entry == null ? null : entry.crawlUrl();
+    }
+
+    public CrawlUrl poll() {
+        Entry entry = pendingUrls.poll();
+        return entry == null ? null : entry.crawlUrl();
+    }
+
+    public List<CrawlUrl> snapshot() {
+        return pendingUrls.stream().map(Entry::crawlUrl).toList();
+    }
+
+    /**
+     * Отмечает ссылку как посещенную, не добавляя ее в очередь обхода.
+     *
+     * @return true, если ссылка встретилась впервые
+     */
+    public boolean markVisited(String url) {
+        if (visitedUrlsFilter != null) {
+            return visitedUrlsFilter.put(url);
+        }
+        return visitedUrls.add(url);
+    }
+
+    private double getPriority(CrawlUrl crawlUrl) {
+        for (WeightedPattern weightedPattern : urlPatternWeights) {
+            if (weightedPattern.pattern().matcher(crawlUrl.url()).find()) {
+                return crawlUrl.depth() - weightedPattern.weight();
+            }
+        }
+        return crawlUrl.depth();
+    }
+
+    private record WeightedPattern(Pattern pattern, double weight) {
+    }
+
+    private record Entry(CrawlUrl crawlUrl, double priority, long sequence) {
+    }
+}
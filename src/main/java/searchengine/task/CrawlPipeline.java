@@ -0,0 +1,391 @@
+package searchengine.task;
+
+import org.apache.log4j.Logger;
+import searchengine.config.CrawlerConfig;
+import searchengine.config.SiteConfig;
+import searchengine.models.Page;
+import searchengine.services.IndexingService;
+import searchengine.storage.IndexStorage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+public class CrawlPipeline implements AutoCloseable {
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long STAGE_TERMINATION_TIMEOUT_SECONDS = 60;
+
+    private final Logger log = Logger.getLogger(IndexingService.class);
+    private final IndexStorage indexStorage;
+    private final HostPolitenessScheduler scheduler;
+    private final PageFetcher fetcher;
+    private final RetryPolicy retryPolicy;
+    private final List<SiteIndexingTask> tasks = new CopyOnWriteArrayList<>();
+    private final CrawlStage fetchStage;
+    private final CrawlStage parseStage;
+    private final PageWriter pageWriter;
+    private final int fetchSlotCount;
+    private final Semaphore fetchSlots;
+    private final ScheduledExecutorService timerExecutor;
+    private final ExecutorService bootstrapExecutor;
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    public CrawlPipeline(CrawlerConfig crawlerConfig, IndexStorage indexStorage) {
+        this.indexStorage = indexStorage;
+        this.fetcher = new PageFetcher(crawlerConfig);
+        this.retryPolicy = new RetryPolicy(crawlerConfig);
+        this.scheduler = new HostPolitenessScheduler(crawlerConfig.getCircuitBreakerFailureThreshold(),
+                crawlerConfig.getCircuitBreakerOpenMillis());
+
+        fetchStage = new CrawlStage("crawl-fetch", crawlerConfig.getFetchThreads(), crawlerConfig.getQueueCapacity());
+        parseStage = new CrawlStage("crawl-parse", crawlerConfig.getParseThreads(), crawlerConfig.getQueueCapacity());
+        pageWriter = new PageWriter(crawlerConfig, indexStorage);
+        fetchSlotCount = crawlerConfig.getFetchThreads() + crawlerConfig.getQueueCapacity();
+        fetchSlots = new Semaphore(fetchSlotCount);
+
+        // чтение robots.txt и карт сайта длится минутами, поэтому не занимает потоки загрузки страниц
+        AtomicInteger bootstrapThreadNumber = new AtomicInteger();
+        bootstrapExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "crawl-bootstrap-" + bootstrapThreadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        timerExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "crawl-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int checkpointInterval = crawlerConfig.getCheckpointIntervalSeconds();
+        if (checkpointInterval > 0) {
+            timerExecutor.scheduleWithFixedDelay(() -> {
+                tasks.forEach(this::saveCheckpoint);
+                logWriterMetrics();
+            }, checkpointInterval, checkpointInterval, TimeUnit.SECONDS);
+        }
+
+        dispatcher = new Thread(this::dispatch, "crawl-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Запускает обход сайта. Пока обход идет, очередь ссылок сайта периодически сохраняется в контрольную точку,
+     * которая удаляется после успешного завершения обхода.
+     */
+    public CompletableFuture<Void> crawl(SiteIndexingTask task, SiteConfig siteConfig) {
+        scheduler.configureHost(task.getSite().getUrl(), siteConfig.getRequestsPerSecond(),
+                siteConfig.getMaxConnections());
+
+        task.retain();
+        bootstrapExecutor.execute(() -> bootstrap(task, siteConfig));
+
+        return task.getCompletion().thenRun(() -> deleteCheckpoint(task));
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(dispatcher);
+        timerExecutor.shutdownNow();
+        bootstrapExecutor.shutdownNow();
+
+        try {
+            dispatcher.join();
+            for (CrawlStage stage : List.of(fetchStage, parseStage)) {
+                stage.shutdown();
+                if (!stage.awaitTermination(STAGE_TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    log.error("Стадия обхода не завершилась за " + STAGE_TERMINATION_TIMEOUT_SECONDS + " секунд");
+                }
+            }
+            pageWriter.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatch() {
+        int nextTaskIndex = 0;
+
+        while (!closed) {
+            tasks.removeIf(task -> task.getCompletion().isDone());
+
+            boolean dispatched = false;
+            long waitNanos = IDLE_WAIT_NANOS;
+
+            List<SiteIndexingTask> taskList = List.copyOf(tasks);
+            int fairShare = taskList.isEmpty() ? fetchSlotCount : Math.max(1, fetchSlotCount / taskList.size());
+
+            for (int i = 0; i < taskList.size(); i++) {
+                SiteIndexingTask task = taskList.get((nextTaskIndex + i) % taskList.size());
+
+                try {
+                    if (task.isStopRequested()) {
+                        stopTask(task);
+                        continue;
+                    }
+
+                    CrawlUrl nextUrl = task.getFrontier().peek();
+                    if (nextUrl == null || task.getActiveFetches().get() >= fairShare) {
+                        continue;
+                    }
+
+                    if (task.isOverBudget()) {
+                        task.finishOnBudget();
+                        continue;
+                    }
+
+                    if (!fetchSlots.tryAcquire()) {
+                        break;
+                    }
+
+                    Optional<HostPolitenessScheduler.Permit> permit = scheduler.tryAcquire(nextUrl.url());
+                    if (permit.isEmpty()) {
+                        fetchSlots.release();
+                        waitNanos = Math.min(waitNanos, scheduler.nanosUntilAvailable(nextUrl.url()));
+                        continue;
+                    }
+
+                    CrawlUrl crawlUrl = task.take();
+                    if (crawlUrl == null || !task.getRobotsRules().isAllowed(crawlUrl.url())) {
+                        permit.get().close();
+                        fetchSlots.release();
+                        if (crawlUrl != null) {
+                            task.finishUrl(crawlUrl);
+                        }
+                        continue;
+                    }
+
+                    task.getActiveFetches().incrementAndGet();
+                    fetchStage.submit(() -> fetch(task, crawlUrl, permit.get()));
+                    dispatched = true;
+                } catch (RuntimeException e) {
+                    log.error("Ошибка при выдаче ссылок сайта " + task.getSite().getUrl() + ": " + e.getMessage());
+                }
+            }
+            nextTaskIndex++;
+
+            if (!dispatched) {
+                LockSupport.parkNanos(this, Math.max(waitNanos, 1));
+            }
+        }
+    }
+
+    /**
+     * Читает robots.txt сайта до первого запроса к его страницам, затем потоково добавляет в очередь ссылки
+     * из карт сайта.
+     */
+    private void bootstrap(SiteIndexingTask task, SiteConfig siteConfig) {
+        String siteUrl = task.getSite().getUrl();
+
+        try (Closeable permit = acquireRequestPermit(task, siteUrl)) {
+            RobotsRules robotsRules = permit == null ? RobotsRules.allowAll() : RobotsRules.read(siteUrl);
+            task.setRobotsRules(robotsRules);
+
+            if (robotsRules.getCrawlDelaySeconds() > 0) {
+                scheduler.configureHost(siteUrl,
+                        Math.min(siteConfig.getRequestsPerSecond(), 1 / robotsRules.getCrawlDelaySeconds()),
+                        siteConfig.getMaxConnections());
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Не удалось прочитать robots.txt сайта " + siteUrl + ": " + e.getMessage());
+        }
+
+        tasks.add(task);
+        LockSupport.unpark(dispatcher);
+
+        try {
+            List<String> sitemapUrls = task.getRobotsRules().getSitemaps().isEmpty() ?
+                    List.of(URI.create(siteUrl).resolve("/sitemap.xml").toString()) :
+                    task.getRobotsRules().getSitemaps();
+
+            SitemapReader.read(sitemapUrls, sitemapUrl -> acquireRequestPermit(task, sitemapUrl), url -> {
+                if (task.isCancelled() || task.isBudgetExhausted()) {
+                    return false;
+                }
+                if (task.offer(url, 1)) {
+                    LockSupport.unpark(dispatcher);
+                }
+                return true;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Не удалось прочитать карту сайта " + siteUrl + ": " + e.getMessage());
+        } finally {
+            task.release();
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    /**
+     * Ожидает место загрузки и разрешение хоста для служебного запроса (robots.txt, карта сайта), чтобы он
+     * подчинялся тем же ограничениям, что и загрузка страниц.
+     *
+     * @return разрешение, которое нужно закрыть после запроса, или null, если обход сайта уже остановлен
+     */
+    private Closeable acquireRequestPermit(SiteIndexingTask task, String url) {
+        while (!closed && !task.isCancelled() && !task.isStopRequested()
+                && !Thread.currentThread().isInterrupted()) {
+            if (fetchSlots.tryAcquire()) {
+                Optional<HostPolitenessScheduler.Permit> permit = scheduler.tryAcquire(url);
+                if (permit.isPresent()) {
+                    return () -> {
+                        permit.get().close();
+                        fetchSlots.release();
+                        LockSupport.unpark(dispatcher);
+                    };
+                }
+                fetchSlots.release();
+            }
+            LockSupport.parkNanos(this, Math.max(1, Math.min(IDLE_WAIT_NANOS, scheduler.nanosUntilAvailable(url))));
+        }
+        return null;
+    }
+
+    /**
+     * Сохраняет контрольную точку с обрабатываемыми сейчас ссылками и сразу отменяет задачу, не дожидаясь
+     * загрузок: их результаты отбрасываются, а сами ссылки будут обойдены заново при возобновлении.
+     */
+    private void stopTask(SiteIndexingTask task) {
+        synchronized (task) {
+            if (!task.isCancelled()) {
+                saveCheckpoint(task);
+                task.cancel();
+            }
+        }
+    }
+
+    private void saveCheckpoint(SiteIndexingTask task) {
+        synchronized (task) {
+            if (task.getCompletion().isDone() || task.isCancelled()) {
+                return;
+            }
+
+            try {
+                indexStorage.saveCheckpoint(task.getSite(), task.getCheckpoint());
+            } catch (RuntimeException e) {
+                log.error("Ошибка при сохранении контрольной точки сайта " + task.getSite().getUrl() + ": "
+                        + e.getMessage());
+            }
+        }
+    }
+
+    private void deleteCheckpoint(SiteIndexingTask task) {
+        synchronized (task) {
+            if (!task.isCancelled()) {
+                indexStorage.deleteCheckpoint(task.getSite());
+            }
+        }
+    }
+
+    private void fetch(SiteIndexingTask task, CrawlUrl crawlUrl, HostPolitenessScheduler.Permit permit) {
+        try {
+            if (task.isCancelled()) {
+                permit.close();
+                task.finishUrl(crawlUrl);
+                return;
+            }
+
+            Optional<FetchResponse> response;
+            try (permit) {
+                try {
+                    response = task.fetch(crawlUrl, fetcher);
+                    permit.recordSuccess();
+                } catch (RetryableFetchException e) {
+                    permit.recordFailure(e.getRetryAfterMillis());
+                    retry(task, crawlUrl, e);
+                    return;
+                }
+            }
+
+            if (response.isEmpty()) {
+                task.finishUrl(crawlUrl);
+                return;
+            }
+            parseStage.submit(() -> analyze(task, crawlUrl, response.get()));
+        } catch (RuntimeException e) {
+            log.error("Ошибка при загрузке страницы " + crawlUrl.url() + ": " + e.getMessage());
+            task.finishUrl(crawlUrl);
+        } finally {
+            task.getActiveFetches().decrementAndGet();
+            fetchSlots.release();
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    /**
+     * Планирует повторный запрос страницы. Пока запрос ожидает, ссылка считается обрабатываемой, поэтому обход
+     * сайта не завершается, а ссылка попадает в контрольную точку.
+     */
+    private void retry(SiteIndexingTask task, CrawlUrl crawlUrl, RetryableFetchException exception) {
+        int attempt = task.nextRetryAttempt(crawlUrl);
+        if (task.isCancelled() || !retryPolicy.canRetry(attempt)) {
+            Optional<Page> errorPage = task.isCancelled() ? Optional.empty() : task.failUrl(crawlUrl, exception);
+            if (errorPage.isEmpty()) {
+                task.finishUrl(crawlUrl);
+                return;
+            }
+            try {
+                pageWriter.submit(task, crawlUrl, errorPage.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                task.finishUrl(crawlUrl);
+            }
+            return;
+        }
+
+        long delay = retryPolicy.getDelayMillis(attempt, exception.getRetryAfterMillis());
+        log.warn("Повторный запрос страницы " + crawlUrl.url() + " через " + delay + " мс (попытка " + attempt
+                + "): " + exception.getMessage());
+
+        try {
+            timerExecutor.schedule(() -> {
+                task.requeue(crawlUrl);
+                LockSupport.unpark(dispatcher);
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            task.finishUrl(crawlUrl);
+        }
+    }
+
+    private void analyze(SiteIndexingTask task, CrawlUrl crawlUrl, FetchResponse response) {
+        try {
+            if (task.isCancelled()) {
+                task.finishUrl(crawlUrl);
+                return;
+            }
+
+            Optional<Page> page = task.analyze(crawlUrl, response);
+            LockSupport.unpark(dispatcher);
+
+            // после остановки ссылки страницы уже не попадают в очередь, поэтому сама страница не сохраняется:
+            // иначе при возобновлении она будет считаться обойденной, а ее ссылки потеряются
+            if (page.isEmpty() || task.isCancelled()) {
+                task.finishUrl(crawlUrl);
+                return;
+            }
+            // ответы 3xx без перехода не сохраняются, а ошибки 4xx и 5xx заменяют прежнюю версию страницы
+            if (page.get().getCode() != 200 && page.get().getCode() < 400) {
+                task.finishUrl(crawlUrl);
+                return;
+            }
+            pageWriter.submit(task, crawlUrl, page.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.finishUrl(crawlUrl);
+        } catch (RuntimeException e) {
+            log.error("Ошибка при анализе страницы " + crawlUrl.url() + ": " + e.getMessage());
+            task.finishUrl(crawlUrl);
+        }
+    }
+
+    private void logWriterMetrics() {
+        log.info("Очередь записи страниц: " + pageWriter.getQueueDepth() + ", сохранено страниц: "
+                + pageWriter.getWrittenPages() + ", транзакций: " + pageWriter.getCommittedGroups());
+    }
+}
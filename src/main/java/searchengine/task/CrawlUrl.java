@@ -0,0 +1,40 @@
+package searchengine.task;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public record CrawlUrl(String url, int depth) {
+    public static byte[] encode(Collection<CrawlUrl> crawlUrls) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(bytes),
+                StandardCharsets.UTF_8))) {
+            for (CrawlUrl crawlUrl : crawlUrls) {
+                writer.write(crawlUrl.depth() + "\t" + crawlUrl.url() + "\n");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static List<CrawlUrl> decode(byte[] data) {
+        List<CrawlUrl> crawlUrls = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(data)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf('\t');
+                crawlUrls.add(new CrawlUrl(line.substring(separator + 1),
+                        Integer.parseInt(line.substring(0, separator))));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return crawlUrls;
+    }
+}
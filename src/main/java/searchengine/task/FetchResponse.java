@@ -0,0 +1,40 @@
+package searchengine.task;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.net.http.HttpHeaders;
+
+/**
+ * Ответ сервера с уже распакованным телом.
+ */
+@Getter
+@RequiredArgsConstructor
+public class FetchResponse {
+    private final String url;
+    private final int statusCode;
+    private final HttpHeaders headers;
+    private final byte[] body;
+
+    public String header(String name) {
+        return headers.firstValue(name).orElse(null);
+    }
+
+    /**
+     * @return кодировка из заголовка Content-Type или null, если ее нужно определить по содержимому
+     */
+    public String charset() {
+        String contentType = header("Content-Type");
+        if (contentType == null) {
+            return null;
+        }
+
+        for (String parameter : contentType.split(";")) {
+            String[] parts = parameter.trim().split("=", 2);
+            if (parts.length == 2 && parts[0].equalsIgnoreCase("charset")) {
+                return parts[1].replace("\"", "").trim();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,80 @@
+package searchengine.task;
+
+import lombok.Getter;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Результат загрузки страницы. HTML разбирается один раз, а документ, ссылки, текст и заголовок
+ * используются всеми этапами индексации.
+ */
+@Getter
+public class FetchResult {
+    private final String url;
+    private final int statusCode;
+    private final String etag;
+    private final String lastModified;
+    private final String contentHash;
+    private Document document;
+    private String html;
+    private String title;
+    private String text;
+    private List<String> links;
+    private String finalUrl;
+    private String canonicalLink;
+
+    private FetchResult(String url, FetchResponse response) {
+        this.url = url;
+        this.statusCode = response.getStatusCode();
+        this.etag = response.header("ETag");
+        this.lastModified = response.header("Last-Modified");
+        this.contentHash = DigestUtils.md5DigestAsHex(response.getBody());
+    }
+
+    /**
+     * Создает результат без разбора HTML, чтобы по хешу содержимого можно было пропустить неизмененную страницу.
+     */
+    public static FetchResult of(String url, FetchResponse response) {
+        return new FetchResult(url, response);
+    }
+
+    public FetchResult parse(FetchResponse response) throws IOException {
+        document = Jsoup.parse(new ByteArrayInputStream(response.getBody()), response.charset(), response.getUrl());
+        html = document.html();
+        title = document.title();
+        text = document.body() == null ? "" : document.body().text();
+        links = extractLinks(document);
+        finalUrl = response.getUrl();
+
+        Element canonicalElement = document.selectFirst("link[rel=canonical]");
+        canonicalLink = canonicalElement == null ? null : canonicalElement.absUrl("href");
+        return this;
+    }
+
+    /**
+     * Извлекает только ссылки страницы, без текста и заголовка: для неизмененных страниц при повторном обходе.
+     */
+    public static List<String> parseLinks(FetchResponse response) throws IOException {
+        return extractLinks(Jsoup.parse(new ByteArrayInputStream(response.getBody()), response.charset(),
+                response.getUrl()));
+    }
+
+    public static List<String> parseLinks(String html, String baseUrl) {
+        return extractLinks(Jsoup.parse(html, baseUrl));
+    }
+
+    private static List<String> extractLinks(Document document) {
+        return document.select("a[href]")
+                .stream()
+                .map(element -> element.absUrl("href"))
+                .filter(link -> !link.isEmpty())
+                .distinct()
+                .toList();
+    }
+}
@@ -0,0 +1,209 @@
+package searchengine.task;
+
+import org.apache.log4j.Logger;
+import searchengine.services.IndexingService;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничивает частоту и число одновременных запросов к каждому хосту. Если запросы к хосту подряд
+ * завершаются временными ошибками, хост исключается из обхода на время (автоматический выключатель),
+ * после чего пропускается один пробный запрос.
+ */
+public class HostPolitenessScheduler {
+    private static final double DEFAULT_REQUESTS_PER_SECOND = 1.0;
+    private static final int DEFAULT_MAX_CONNECTIONS = 1;
+    private static final Logger log = Logger.getLogger(IndexingService.class);
+
+    private final Map<String, HostBucket> buckets = new ConcurrentHashMap<>();
+    private final int failureThreshold;
+    private final long openNanos;
+
+    public HostPolitenessScheduler(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    /**
+     * Задает лимиты хоста. Состояние уже существующего хоста (токены, открытые соединения, выключатель)
+     * сохраняется, поэтому выданные раньше разрешения освобождаются в тот же счетчик соединений.
+     */
+    public void configureHost(String url, double requestsPerSecond, int maxConnections) {
+        buckets.compute(getHost(url), (host, bucket) -> {
+            if (bucket == null) {
+                return new HostBucket(host, requestsPerSecond, maxConnections, failureThreshold, openNanos);
+            }
+            bucket.configure(requestsPerSecond, maxConnections);
+            return bucket;
+        });
+    }
+
+    /**
+     * Забирает токен и соединение хоста без ожидания.
+     *
+     * @return разрешение на запрос, которое нужно закрыть после его завершения, или пустое значение,
+     * если лимит хоста сейчас исчерпан
+     */
+    public Optional<Permit> tryAcquire(String url) {
+        return Optional.ofNullable(getBucket(url).tryAcquire());
+    }
+
+    public long nanosUntilAvailable(String url) {
+        return getBucket(url).nanosUntilAvailable();
+    }
+
+    private HostBucket getBucket(String url) {
+        return buckets.computeIfAbsent(getHost(url), host -> new HostBucket(host, DEFAULT_REQUESTS_PER_SECOND,
+                DEFAULT_MAX_CONNECTIONS, failureThreshold, openNanos));
+    }
+
+    private static String getHost(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? url : host.toLowerCase();
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    public static class Permit implements AutoCloseable {
+        private final HostBucket bucket;
+        /**
+         * Пробный запрос к хосту после паузы выключателя
+         */
+        private final boolean probe;
+        private boolean released;
+
+        private Permit(HostBucket bucket, boolean probe) {
+            this.bucket = bucket;
+            this.probe = probe;
+        }
+
+        public void recordSuccess() {
+            bucket.recordSuccess();
+        }
+
+        /**
+         * @param retryAfterMillis пауза, запрошенная сервером; хост исключается из обхода как минимум на это время
+         */
+        public void recordFailure(long retryAfterMillis) {
+            bucket.recordFailure(TimeUnit.MILLISECONDS.toNanos(retryAfterMillis));
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!released) {
+                released = true;
+                bucket.release(probe);
+            }
+        }
+    }
+
+    private static class HostBucket {
+        private final String host;
+        private final int failureThreshold;
+        private final long openNanos;
+        private double requestsPerNano;
+        private double capacity;
+        private int maxConnections;
+        private double tokens;
+        private long lastRefillTime;
+        private int activeConnections;
+        private int consecutiveFailures;
+        private long openUntil;
+        private boolean halfOpen;
+        private boolean probeInFlight;
+
+        private HostBucket(String host, double requestsPerSecond, int maxConnections, int failureThreshold,
+                           long openNanos) {
+            this.host = host;
+            this.failureThreshold = failureThreshold;
+            this.openNanos = openNanos;
+            setLimits(requestsPerSecond, maxConnections);
+            this.tokens = 1.0;
+            this.lastRefillTime = System.nanoTime();
+        }
+
+        private synchronized void configure(double requestsPerSecond, int maxConnections) {
+            refill();
+            setLimits(requestsPerSecond, maxConnections);
+            tokens = Math.min(tokens, capacity);
+        }
+
+        private void setLimits(double requestsPerSecond, int maxConnections) {
+            this.requestsPerNano = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = Math.max(1.0, requestsPerSecond);
+            this.maxConnections = Math.max(1, maxConnections);
+        }
+
+        /**
+         * @return разрешение или null, если лимит хоста сейчас исчерпан
+         */
+        private synchronized Permit tryAcquire() {
+            refill();
+            if (halfOpen && (openUntil - System.nanoTime() > 0 || probeInFlight)) {
+                return null;
+            }
+            if (tokens < 1.0 || activeConnections >= maxConnections) {
+                return null;
+            }
+            tokens -= 1.0;
+            activeConnections++;
+            probeInFlight = halfOpen;
+            return new Permit(this, halfOpen);
+        }
+
+        private synchronized void recordSuccess() {
+            if (halfOpen) {
+                log.info("Хост " + host + " снова доступен для обхода");
+            }
+            consecutiveFailures = 0;
+            halfOpen = false;
+            probeInFlight = false;
+        }
+
+        private synchronized void recordFailure(long retryAfterNanos) {
+            consecutiveFailures++;
+            if (!halfOpen && consecutiveFailures < failureThreshold && retryAfterNanos <= 0) {
+                return;
+            }
+
+            long pauseNanos = Math.max(openNanos, retryAfterNanos);
+            openUntil = System.nanoTime() + pauseNanos;
+            halfOpen = true;
+            probeInFlight = false;
+            log.warn("Хост " + host + " исключен из обхода на " + TimeUnit.NANOSECONDS.toSeconds(pauseNanos)
+                    + " с после " + consecutiveFailures + " ошибок подряд");
+        }
+
+        private synchronized void release(boolean probe) {
+            activeConnections--;
+            if (probe) {
+                probeInFlight = false;
+            }
+        }
+
+        private synchronized long nanosUntilAvailable() {
+            refill();
+            long openDelay = openUntil - System.nanoTime();
+            if (halfOpen && openDelay > 0) {
+                return openDelay;
+            }
+            long tokenDelay = tokens >= 1.0 ? 0 : (long) Math.ceil((1.0 - tokens) / requestsPerNano);
+            if (activeConnections >= maxConnections) {
+                return Math.max(tokenDelay, (long) Math.ceil(1.0 / requestsPerNano));
+            }
+            return tokenDelay;
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefillTime) * requestsPerNano);
+            lastRefillTime = now;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package searchengine.task;
+
+import lombok.Getter;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Один запуск индексации. Отмена задания или отдельного сайта не ждет потоков обхода: они сами проверяют
+ * признак остановки сайта перед каждым запросом и каждой записью в базу.
+ * <p>
+ * Задание считается запущенным, пока не завершатся его конвейер обхода и запись страниц, в том числе после
+ * отмены: иначе новое задание писало бы в те же сайты параллельно с дозаписью старого.
+ */
+@Getter
+public class IndexingJob {
+    private final String id = UUID.randomUUID().toString();
+    private final Date startTime = new Date();
+    private final Map<String, SiteIndexingTask> tasks = new ConcurrentHashMap<>();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private volatile boolean cancelled;
+
+    public void addTask(SiteIndexingTask task) {
+        tasks.put(task.getSite().getUrl(), task);
+        if (cancelled) {
+            task.requestStop();
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+        tasks.values().forEach(SiteIndexingTask::requestStop);
+    }
+
+    public Optional<SiteIndexingTask> cancelSite(String siteUrl) {
+        Optional<SiteIndexingTask> task = Optional.ofNullable(tasks.get(siteUrl))
+                .filter(siteTask -> !siteTask.getCompletion().isDone());
+        task.ifPresent(SiteIndexingTask::requestStop);
+        return task;
+    }
+
+    public boolean isRunning() {
+        return !completion.isDone();
+    }
+}
@@ -0,0 +1,105 @@
+package searchengine.task;
+
+import org.apache.log4j.Logger;
+import org.brotli.dec.BrotliInputStream;
+import searchengine.config.CrawlerConfig;
+import searchengine.services.IndexingService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Загружает страницы через общий HTTP-клиент: соединения с хостом переиспользуются между запросами,
+ * для HTTPS по возможности используется HTTP/2, тело запрашивается в сжатом виде.
+ * <p>
+ * Сайты по http запрашиваются по HTTP/1.1: попытка перейти на HTTP/2 без TLS (заголовок Upgrade: h2c)
+ * отвергается частью серверов и прокси.
+ */
+public class PageFetcher {
+    private static final String ACCEPT_ENCODING = "gzip, deflate, br";
+    private static final Logger log = Logger.getLogger(IndexingService.class);
+
+    private final HttpClient client;
+    private final Duration readTimeout;
+    private final int maxBodySizeBytes;
+
+    public PageFetcher(CrawlerConfig crawlerConfig) {
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(crawlerConfig.getConnectTimeoutMillis()))
+                .build();
+        readTimeout = Duration.ofMillis(crawlerConfig.getReadTimeoutMillis());
+        maxBodySizeBytes = crawlerConfig.getMaxBodySizeBytes();
+    }
+
+    /**
+     * @param headers дополнительные заголовки запроса, например условные заголовки повторного обхода
+     * @throws java.net.http.HttpTimeoutException если сервер не ответил за отведенное время
+     */
+    public FetchResponse fetch(String url, Map<String, String> headers) throws IOException, InterruptedException {
+        URI uri = URI.create(url);
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .version("https".equalsIgnoreCase(uri.getScheme()) ? HttpClient.Version.HTTP_2
+                        : HttpClient.Version.HTTP_1_1)
+                .timeout(readTimeout)
+                .header("User-Agent", SiteIndexingTask.USER_AGENT)
+                .header("Referer", "http://www.google.com")
+                .header("Accept-Encoding", ACCEPT_ENCODING)
+                .GET();
+        headers.forEach(request::header);
+
+        HttpResponse<InputStream> response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        String contentEncoding = response.headers().firstValue("Content-Encoding").orElse("");
+
+        byte[] body;
+        InputStream rawBody = response.body();
+        try (rawBody; InputStream stream = decode(rawBody, contentEncoding)) {
+            body = stream.readNBytes(maxBodySizeBytes);
+            if (stream.read() != -1) {
+                log.warn("Страница " + url + " больше " + maxBodySizeBytes
+                        + " байт, индексируется только ее начало");
+            }
+        }
+
+        return new FetchResponse(response.uri().toString(), response.statusCode(), response.headers(), body);
+    }
+
+    /**
+     * Распаковывает тело по мере чтения, поэтому ограничение размера относится к распакованным данным:
+     * обрезанный сжатый поток не ломает распаковку, а сильно сжатое тело не раздувается сверх лимита.
+     */
+    private static InputStream decode(InputStream body, String contentEncoding) throws IOException {
+        PushbackInputStream stream = new PushbackInputStream(body, 2);
+        byte[] header = stream.readNBytes(2);
+        if (header.length == 0) {
+            return stream;
+        }
+        stream.unread(header);
+
+        return switch (contentEncoding.trim().toLowerCase()) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(stream);
+            case "br" -> new BrotliInputStream(stream);
+            case "deflate" -> new InflaterInputStream(stream, new Inflater(!isZlibWrapped(header)));
+            default -> stream;
+        };
+    }
+
+    /**
+     * По стандарту deflate передается в обертке zlib, но часть серверов отдает "сырой" поток без нее.
+     */
+    private static boolean isZlibWrapped(byte[] header) {
+        return header.length > 1 && (header[0] & 0x0F) == 8
+                && ((header[0] & 0xFF) << 8 | (header[1] & 0xFF)) % 31 == 0;
+    }
+}
@@ -0,0 +1,150 @@
+package searchengine.task;
+
+import org.apache.log4j.Logger;
+import searchengine.config.CrawlerConfig;
+import searchengine.models.Page;
+import searchengine.services.IndexingService;
+import searchengine.storage.IndexStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Отложенная запись разобранных страниц. Потоки обхода только ставят страницу в ограниченную очередь,
+ * а потоки записи сохраняют накопившиеся страницы группами, по одной транзакции на группу.
+ * <p>
+ * Страницы одного сайта всегда попадают к одному потоку записи и сохраняются в порядке поступления.
+ * Ссылка считается обработанной только после фиксации транзакции, поэтому до этого момента она остается
+ * в контрольной точке и при сбое будет обойдена заново.
+ */
+public class PageWriter implements AutoCloseable {
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    private final Logger log = Logger.getLogger(IndexingService.class);
+    private final IndexStorage indexStorage;
+    private final int groupSize;
+    private final List<BlockingQueue<PendingPage>> queues = new ArrayList<>();
+    private final List<Thread> writers = new ArrayList<>();
+    private final AtomicLong writtenPages = new AtomicLong();
+    private final AtomicLong committedGroups = new AtomicLong();
+    private volatile boolean closed;
+
+    private record PendingPage(SiteIndexingTask task, CrawlUrl crawlUrl, Page page) {
+    }
+
+    public PageWriter(CrawlerConfig crawlerConfig, IndexStorage indexStorage) {
+        this.indexStorage = indexStorage;
+        this.groupSize = Math.max(1, crawlerConfig.getWriteGroupSize());
+
+        int writerCount = Math.max(1, crawlerConfig.getStoreThreads());
+        for (int i = 0; i < writerCount; i++) {
+            BlockingQueue<PendingPage> queue = new ArrayBlockingQueue<>(Math.max(1, crawlerConfig.getQueueCapacity()));
+            Thread writer = new Thread(() -> writeLoop(queue), "crawl-writer-" + (i + 1));
+            writer.setDaemon(true);
+            queues.add(queue);
+            writers.add(writer);
+            writer.start();
+        }
+    }
+
+    /**
+     * Ставит страницу в очередь записи. Если очередь заполнена, вызывающий поток ждет освободившегося места.
+     */
+    public void submit(SiteIndexingTask task, CrawlUrl crawlUrl, Page page) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Запись страниц остановлена");
+        }
+        queues.get(Math.floorMod(task.getSite().getId(), queues.size())).put(new PendingPage(task, crawlUrl, page));
+    }
+
+    public int getQueueDepth() {
+        return queues.stream().mapToInt(BlockingQueue::size).sum();
+    }
+
+    public long getWrittenPages() {
+        return writtenPages.get();
+    }
+
+    public long getCommittedGroups() {
+        return committedGroups.get();
+    }
+
+    /**
+     * Прекращает прием страниц и ждет, пока потоки записи сохранят все уже поставленные в очередь.
+     * Страницы остановленных сайтов не сохраняются, поэтому остановка не ждет записи их очереди.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Запись страниц завершена: сохранено " + writtenPages.get() + " страниц в "
+                + committedGroups.get() + " транзакциях");
+    }
+
+    private void writeLoop(BlockingQueue<PendingPage> queue) {
+        List<PendingPage> group = new ArrayList<>(groupSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                PendingPage first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                queue.drainTo(group, groupSize - 1);
+
+                // ссылки остановленного сайта уже сохранены в контрольной точке и будут обойдены при возобновлении
+                List<PendingPage> activePages = group.stream()
+                        .filter(pendingPage -> !pendingPage.task().isCancelled())
+                        .toList();
+                if (!activePages.isEmpty()) {
+                    writeGroup(activePages);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                group.forEach(pendingPage -> pendingPage.task().finishUrl(pendingPage.crawlUrl()));
+                group.clear();
+            }
+        }
+    }
+
+    /**
+     * Сохраняет группу одной транзакцией. Если транзакция не прошла, страницы сохраняются по одной,
+     * чтобы ошибка в одной странице не отменяла запись остальных.
+     */
+    private void writeGroup(List<PendingPage> group) {
+        try {
+            indexStorage.storePages(group.stream().map(PendingPage::page).toList());
+            writtenPages.addAndGet(group.size());
+            committedGroups.incrementAndGet();
+            return;
+        } catch (RuntimeException e) {
+            log.warn("Ошибка при групповой записи " + group.size() + " страниц, страницы сохраняются по одной: "
+                    + e.getMessage());
+        }
+
+        group.forEach(pendingPage -> {
+            if (pendingPage.task().isCancelled()) {
+                return;
+            }
+            try {
+                indexStorage.storePages(List.of(pendingPage.page()));
+                writtenPages.incrementAndGet();
+                committedGroups.incrementAndGet();
+            } catch (RuntimeException e) {
+                log.error("Ошибка при сохранении страницы " + pendingPage.page().getPath() + ": " + e.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,35 @@
+package searchengine.task;
+
+import searchengine.config.CrawlerConfig;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Экспоненциальная задержка со случайной составляющей, чтобы повторные запросы разных потоков не приходили
+ * на сервер одновременно.
+ */
+public class RetryPolicy {
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    public RetryPolicy(CrawlerConfig crawlerConfig) {
+        this.maxRetries = crawlerConfig.getMaxRetries();
+        this.baseDelayMillis = Math.max(1, crawlerConfig.getRetryBaseDelayMillis());
+        this.maxDelayMillis = Math.max(baseDelayMillis, crawlerConfig.getRetryMaxDelayMillis());
+    }
+
+    public boolean canRetry(int attempt) {
+        return attempt <= maxRetries;
+    }
+
+    /**
+     * @param attempt          номер повтора, начиная с 1
+     * @param retryAfterMillis задержка, запрошенная сервером, или 0
+     */
+    public long getDelayMillis(int attempt, long retryAfterMillis) {
+        long exponentialDelay = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 30));
+        long delay = exponentialDelay / 2 + ThreadLocalRandom.current().nextLong(exponentialDelay / 2 + 1);
+        return Math.min(maxDelayMillis, Math.max(delay, retryAfterMillis));
+    }
+}
@@ -0,0 +1,29 @@
+package searchengine.task;
+
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * Временная ошибка загрузки страницы: таймаут, обрыв соединения, ответ 429 или 5xx.
+ * Запрос к такой странице повторяется позже.
+ */
+@Getter
+public class RetryableFetchException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Код ответа сервера или 0, если ответа не было
+     */
+    private final int statusCode;
+    /**
+     * Задержка из заголовка Retry-After или 0, если заголовка не было
+     */
+    private final long retryAfterMillis;
+
+    public RetryableFetchException(int statusCode, String message, long retryAfterMillis) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+}
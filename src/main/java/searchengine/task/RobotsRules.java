@@ -0,0 +1,172 @@
+package searchengine.task;
+
+import lombok.Getter;
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+@Getter
+public class RobotsRules {
+    private static final String USER_AGENT_TOKEN = "googlebot";
+
+    private final List<Rule> rules;
+    private final double crawlDelaySeconds;
+    private final List<String> sitemaps;
+
+    private RobotsRules(List<Rule> rules, double crawlDelaySeconds, List<String> sitemaps) {
+        this.rules = rules;
+        this.crawlDelaySeconds = crawlDelaySeconds;
+        this.sitemaps = sitemaps;
+    }
+
+    public static RobotsRules allowAll() {
+        return new RobotsRules(List.of(), 0, List.of());
+    }
+
+    /**
+     * Загружает robots.txt сайта. Если файла нет, обход ничем не ограничивается.
+     */
+    public static RobotsRules read(String siteUrl) throws IOException {
+        Connection.Response response = Jsoup.connect(URI.create(siteUrl).resolve("/robots.txt").toString())
+                .timeout(10000)
+                .userAgent(SiteIndexingTask.USER_AGENT)
+                .ignoreContentType(true)
+                .ignoreHttpErrors(true)
+                .execute();
+
+        return response.statusCode() == 200 ? parse(response.body()) : allowAll();
+    }
+
+    public static RobotsRules parse(String content) {
+        List<Rule> generalRules = new ArrayList<>();
+        List<Rule> agentRules = new ArrayList<>();
+        double generalCrawlDelay = 0;
+        double agentCrawlDelay = 0;
+        boolean agentGroupFound = false;
+        List<String> sitemaps = new ArrayList<>();
+
+        Set<String> groupAgents = new HashSet<>();
+        boolean groupHasRules = false;
+
+        for (String line : content.split("\r?\n|\r")) {
+            int commentStart = line.indexOf('#');
+            if (commentStart >= 0) {
+                line = line.substring(0, commentStart);
+            }
+
+            int separator = line.indexOf(':');
+            if (separator < 0) {
+                continue;
+            }
+            String key = line.substring(0, separator).trim().toLowerCase();
+            String value = line.substring(separator + 1).trim();
+
+            if (key.equals("sitemap")) {
+                sitemaps.add(value);
+                continue;
+            }
+
+            if (key.equals("user-agent")) {
+                if (groupHasRules) {
+                    groupAgents.clear();
+                    groupHasRules = false;
+                }
+                groupAgents.add(value.toLowerCase());
+                continue;
+            }
+
+            groupHasRules = true;
+            boolean isGeneralGroup = groupAgents.contains("*");
+            boolean isAgentGroup = groupAgents.stream()
+                    .anyMatch(agent -> !agent.equals("*") && USER_AGENT_TOKEN.startsWith(agent));
+            agentGroupFound |= isAgentGroup;
+
+            switch (key) {
+                case "allow", "disallow" -> {
+                    if (value.isEmpty()) {
+                        continue;
+                    }
+                    Rule rule = makeRule(value, key.equals("allow"));
+                    if (isGeneralGroup) {
+                        generalRules.add(rule);
+                    }
+                    if (isAgentGroup) {
+                        agentRules.add(rule);
+                    }
+                }
+                case "crawl-delay" -> {
+                    double crawlDelay = parseCrawlDelay(value);
+                    if (isGeneralGroup) {
+                        generalCrawlDelay = crawlDelay;
+                    }
+                    if (isAgentGroup) {
+                        agentCrawlDelay = crawlDelay;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        return agentGroupFound ?
+                new RobotsRules(agentRules, agentCrawlDelay, sitemaps) :
+                new RobotsRules(generalRules, generalCrawlDelay, sitemaps);
+    }
+
+    public boolean isAllowed(String url) {
+        if (rules.isEmpty()) {
+            return true;
+        }
+
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (uri.getRawQuery() != null) {
+            path = path + "?" + uri.getRawQuery();
+        }
+
+        Rule matchedRule = null;
+        for (Rule rule : rules) {
+            if (!rule.pattern().matcher(path).lookingAt()) {
+                continue;
+            }
+            if (matchedRule == null || rule.length() > matchedRule.length()
+                    || rule.length() == matchedRule.length() && rule.allow()) {
+                matchedRule = rule;
+            }
+        }
+
+        return matchedRule == null || matchedRule.allow();
+    }
+
+    private static Rule makeRule(String value, boolean allow) {
+        boolean anchored = value.endsWith("$");
+        String body = anchored ? value.substring(0, value.length() - 1) : value;
+
+        String regex = Arrays.stream(body.split("\\*", -1))
+                .map(Pattern::quote)
+                .collect(Collectors.joining(".*"));
+
+        return new Rule(Pattern.compile(anchored ? regex + "$" : regex), value.length(), allow);
+    }
+
+    private static double parseCrawlDelay(String value) {
+        try {
+            return Math.max(0, Double.parseDouble(value));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private record Rule(Pattern pattern, int length, boolean allow) {
+    }
+}
@@ -0,0 +1,407 @@
+package searchengine.task;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.log4j.Logger;
+import searchengine.models.Page;
+import searchengine.models.Site;
+import searchengine.services.IndexingService;
+import searchengine.services.LemmaService;
+import searchengine.services.PageService;
+import searchengine.storage.IndexStorage;
+import searchengine.storage.PageVersion;
+import searchengine.utils.SimHash;
+import searchengine.utils.SimHashIndex;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Getter
+public class SiteIndexingTask {
+    public static final String USER_AGENT =
+            "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)";
+
+    private final Logger log = Logger.getLogger(IndexingService.class);
+    private final IndexStorage indexStorage;
+    private final Site site;
+    private final CrawlFrontier frontier;
+    private final UrlCanonicalizer canonicalizer;
+    private final SimHashIndex duplicateIndex;
+    private final CrawlBudget budget;
+    private final long startTime = System.currentTimeMillis();
+    private final AtomicInteger crawledPages = new AtomicInteger();
+    private final Map<String, PageVersion> knownPages;
+    private final AtomicInteger pendingUrls = new AtomicInteger();
+    private final AtomicInteger activeFetches = new AtomicInteger();
+    private final Set<CrawlUrl> inFlightUrls = ConcurrentHashMap.newKeySet();
+    private final Map<String, Integer> retryAttempts = new ConcurrentHashMap<>();
+    private volatile boolean stopRequested;
+    private volatile boolean cancelled;
+    private volatile boolean budgetExhausted;
+    private volatile String rootFailure;
+    @Setter
+    private volatile RobotsRules robotsRules = RobotsRules.allowAll();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    public SiteIndexingTask(IndexStorage indexStorage, Site site, CrawlFrontier frontier,
+                            UrlCanonicalizer canonicalizer, SimHashIndex duplicateIndex, CrawlBudget budget,
+                            Map<String, PageVersion> knownPages) {
+        this.indexStorage = indexStorage;
+        this.site = site;
+        this.frontier = frontier;
+        this.canonicalizer = canonicalizer;
+        this.duplicateIndex = duplicateIndex;
+        this.budget = budget;
+        this.knownPages = knownPages;
+    }
+
+    /**
+     * Ставит ссылку в очередь обхода в каноническом виде.
+     * Ссылки за пределами сайта, на файлы, запрещенные robots.txt, глубже допустимого
+     * и на уже известные страницы отбрасываются.
+     */
+    public boolean offer(String url, int depth) {
+        if (cancelled || budgetExhausted || !budget.allowsDepth(depth)) {
+            return false;
+        }
+
+        Optional<String> canonicalUrl = canonicalizer.canonicalize(url);
+        if (canonicalUrl.isEmpty() || !isStorable(canonicalUrl.get()) || !robotsRules.isAllowed(canonicalUrl.get())) {
+            return false;
+        }
+
+        pendingUrls.incrementAndGet();
+        if (frontier.offer(new CrawlUrl(canonicalUrl.get(), depth))) {
+            return true;
+        }
+        finishPendingUrl();
+        return false;
+    }
+
+    /**
+     * Синхронизирован с сохранением контрольной точки, чтобы ссылка не пропала из нее между очередью
+     * и множеством обрабатываемых ссылок.
+     */
+    public synchronized CrawlUrl take() {
+        CrawlUrl crawlUrl = frontier.poll();
+        if (crawlUrl != null) {
+            inFlightUrls.add(crawlUrl);
+            crawledPages.incrementAndGet();
+        }
+        return crawlUrl;
+    }
+
+    public void finishUrl(CrawlUrl crawlUrl) {
+        inFlightUrls.remove(crawlUrl);
+        retryAttempts.remove(crawlUrl.url());
+        finishPendingUrl();
+    }
+
+    /**
+     * Просит остановить обход сайта. Диспетчер сохраняет контрольную точку и отменяет задачу,
+     * после чего уже загруженные страницы не обрабатываются и не записываются в базу.
+     */
+    public void requestStop() {
+        stopRequested = true;
+    }
+
+    public void cancel() {
+        cancelled = true;
+        drainFrontier();
+    }
+
+    public boolean isOverBudget() {
+        return budget.isExceeded(crawledPages.get(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Завершает обход после исчерпания бюджета: оставшиеся ссылки отбрасываются, уже загруженные страницы
+     * дообрабатываются.
+     */
+    public void finishOnBudget() {
+        if (!budgetExhausted) {
+            budgetExhausted = true;
+            log.info("Обход сайта " + site.getUrl() + " остановлен по достижении лимитов: обойдено "
+                    + crawledPages.get() + " страниц");
+        }
+        drainFrontier();
+    }
+
+    private void drainFrontier() {
+        while (frontier.poll() != null) {
+            finishPendingUrl();
+        }
+    }
+
+    /**
+     * @return ссылки, которые еще предстоит обойти, включая обрабатываемые сейчас
+     */
+    public List<CrawlUrl> getCheckpoint() {
+        List<CrawlUrl> checkpoint = new ArrayList<>(inFlightUrls);
+        checkpoint.addAll(frontier.snapshot());
+        return checkpoint;
+    }
+
+    /**
+     * Не дает обходу завершиться, пока не будет вызван {@link #release()}, даже если очередь ссылок пуста.
+     */
+    public void retain() {
+        pendingUrls.incrementAndGet();
+    }
+
+    public void release() {
+        finishPendingUrl();
+    }
+
+    private void finishPendingUrl() {
+        if (pendingUrls.decrementAndGet() == 0) {
+            completion.complete(null);
+        }
+    }
+
+    /**
+     * @throws RetryableFetchException при временной ошибке; повторный запрос планирует конвейер обхода
+     */
+    public Optional<FetchResponse> fetch(CrawlUrl crawlUrl, PageFetcher fetcher) throws RetryableFetchException {
+        String url = crawlUrl.url();
+        try {
+            log.info("Индексация страницы: " + url);
+
+            Map<String, String> headers = new HashMap<>();
+            PageVersion knownPage = knownPages.get(PageService.makePath(site, url));
+            if (knownPage != null && knownPage.code() == 200) {
+                if (knownPage.etag() != null) {
+                    headers.put("If-None-Match", knownPage.etag());
+                }
+                if (knownPage.lastModified() != null) {
+                    headers.put("If-Modified-Since", knownPage.lastModified());
+                }
+            }
+
+            FetchResponse response = fetcher.fetch(url, headers);
+            int statusCode = response.getStatusCode();
+            if (statusCode >= 400) {
+                String message = "HTTP error fetching URL. Status=" + statusCode + ", URL=" + url;
+                if (isRetryableStatus(statusCode)) {
+                    throw new RetryableFetchException(statusCode, message,
+                            getRetryAfterMillis(response.header("Retry-After")));
+                }
+            }
+
+            return Optional.of(response);
+
+        } catch (RetryableFetchException exception) {
+            throw exception;
+        } catch (HttpTimeoutException exception) {
+            throw new RetryableFetchException(408, exception.getClass().getName() + ": " + exception.getMessage(), 0);
+        } catch (IOException exception) {
+            throw new RetryableFetchException(0, exception.getClass().getName() + ": " + exception.getMessage(), 0);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Отмечает ошибку страницы, которую не удалось загрузить за все попытки.
+     *
+     * @return страница с кодом ошибки для записи или пустое значение, если сервер так и не ответил
+     */
+    public Optional<Page> failUrl(CrawlUrl crawlUrl, RetryableFetchException exception) {
+        if (exception.getStatusCode() > 0) {
+            return Optional.of(makeErrorPage(crawlUrl, exception.getStatusCode(), exception.getMessage()));
+        }
+        markRootFailure(crawlUrl, exception.getMessage());
+        log.error("Не удалось загрузить страницу " + crawlUrl.url() + ": " + exception.getMessage());
+        return Optional.empty();
+    }
+
+    /**
+     * @return номер очередного повтора запроса к странице
+     */
+    public int nextRetryAttempt(CrawlUrl crawlUrl) {
+        return retryAttempts.merge(crawlUrl.url(), 1, Integer::sum);
+    }
+
+    /**
+     * Возвращает ссылку, ожидавшую повторного запроса, в очередь. Ссылка остается учтенной в контрольной точке.
+     */
+    public synchronized void requeue(CrawlUrl crawlUrl) {
+        if (cancelled) {
+            finishUrl(crawlUrl);
+            return;
+        }
+        frontier.requeue(crawlUrl);
+        inFlightUrls.remove(crawlUrl);
+    }
+
+    private static boolean isRetryableStatus(int statusCode) {
+        return statusCode == 408 || statusCode == 429 || statusCode >= 500 && statusCode != 501;
+    }
+
+    private static long getRetryAfterMillis(String retryAfter) {
+        if (retryAfter == null || retryAfter.isBlank()) {
+            return 0;
+        }
+
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime retryTime = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(), retryTime).toMillis());
+            } catch (DateTimeParseException parseException) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Разбирает загруженную страницу. Неизмененная страница (304 или тот же хеш содержимого) не разбирается
+     * и не индексируется заново, но ее ссылки все равно ставятся в очередь, чтобы найти новые страницы сайта.
+     */
+    public Optional<Page> analyze(CrawlUrl crawlUrl, FetchResponse response) {
+        String url = crawlUrl.url();
+        if (response.getStatusCode() >= 400) {
+            return Optional.of(makeErrorPage(crawlUrl, response.getStatusCode(),
+                    "HTTP error fetching URL. Status=" + response.getStatusCode() + ", URL=" + url));
+        }
+
+        PageVersion knownPage = knownPages.get(PageService.makePath(site, url));
+        if (response.getStatusCode() == 304) {
+            if (knownPage != null) {
+                indexStorage.getPageHtml(knownPage.id()).ifPresent(html ->
+                        FetchResult.parseLinks(html, url).forEach(link -> offer(link, crawlUrl.depth() + 1)));
+            }
+            return Optional.empty();
+        }
+
+        try {
+            FetchResult fetchResult = FetchResult.of(url, response);
+
+            if (knownPage != null && knownPage.code().equals(fetchResult.getStatusCode())
+                    && fetchResult.getContentHash().equals(knownPage.contentHash())) {
+                FetchResult.parseLinks(response).forEach(link -> offer(link, crawlUrl.depth() + 1));
+                return Optional.empty();
+            }
+
+            fetchResult.parse(response);
+            Optional<String> effectiveUrl = resolveEffectiveUrl(url, fetchResult);
+            if (effectiveUrl.isEmpty()) {
+                return Optional.empty();
+            }
+
+            Page page = PageService.getPage(fetchResult, site, effectiveUrl.get());
+            knownPage = knownPages.get(page.getPath());
+            if (knownPage != null) {
+                page.setId(knownPage.id());
+            }
+
+            if (page.getCode() == 200) {
+                markNearDuplicate(page);
+                if (page.getDuplicateOf() == null) {
+                    page.setLemmas(new HashMap<>(LemmaService.getLemmas(page)));
+                }
+            }
+
+            fetchResult.getLinks().forEach(link -> offer(link, crawlUrl.depth() + 1));
+
+            return Optional.of(page);
+        } catch (IOException e) {
+            markRootFailure(crawlUrl, e.getMessage());
+            log.error("Ошибка при разборе страницы " + url + ": " + e.getMessage());
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Почти полная копия уже проиндексированной страницы сохраняется без содержимого и не попадает в индекс.
+     */
+    private void markNearDuplicate(Page page) {
+        if (duplicateIndex == null) {
+            return;
+        }
+
+        SimHash.fingerprint(page.getText()).ifPresent(fingerprint -> {
+            page.setSimHash(fingerprint);
+            duplicateIndex.findOrAdd(page.getPath(), fingerprint).ifPresent(originalPath -> {
+                page.setDuplicateOf(originalPath);
+                page.setContext(null);
+                page.setText(null);
+                log.info("Страница " + page.getPath() + " является дубликатом " + originalPath);
+            });
+        });
+    }
+
+    /**
+     * Определяет адрес, под которым сохраняется страница: цель редиректа или ссылку rel=canonical.
+     *
+     * @return пустое значение, если страница под этим адресом уже обойдена или стоит в очереди
+     */
+    private Optional<String> resolveEffectiveUrl(String url, FetchResult fetchResult) {
+        String effectiveUrl = url;
+        for (String alias : Arrays.asList(fetchResult.getFinalUrl(), fetchResult.getCanonicalLink())) {
+            Optional<String> canonicalAlias = alias == null ? Optional.empty() : canonicalizer.canonicalize(alias);
+            if (canonicalAlias.isEmpty() || canonicalAlias.get().equals(effectiveUrl)
+                    || !isStorable(canonicalAlias.get())) {
+                continue;
+            }
+            if (!frontier.markVisited(canonicalAlias.get())) {
+                return Optional.empty();
+            }
+            effectiveUrl = canonicalAlias.get();
+        }
+        return Optional.of(effectiveUrl);
+    }
+
+    /**
+     * @return false, если путь страницы не помещается в столбец page.path
+     */
+    private boolean isStorable(String url) {
+        return PageService.makePath(site, url).length() <= Page.MAX_PATH_LENGTH;
+    }
+
+    /**
+     * @return причина, по которой не удалось обработать главную страницу сайта, если так случилось
+     */
+    public Optional<String> getRootFailure() {
+        return Optional.ofNullable(rootFailure);
+    }
+
+    private void markRootFailure(CrawlUrl crawlUrl, String message) {
+        if (crawlUrl.depth() == 0) {
+            rootFailure = "Не удалось загрузить главную страницу сайта: " + message;
+        }
+    }
+
+    /**
+     * Страница с кодом ошибки записывается через общую очередь записи, как и остальные страницы: прежняя версия
+     * страницы при этом удаляется из индекса, а ее содержимое - из хранилища.
+     */
+    private Page makeErrorPage(CrawlUrl crawlUrl, int statusCode, String message) {
+        markRootFailure(crawlUrl, message);
+        Page page = PageService.getPageWithError(site, crawlUrl.url(), statusCode);
+
+        PageVersion knownPage = knownPages.get(page.getPath());
+        if (knownPage != null) {
+            page.setId(knownPage.id());
+        }
+        if (!isCancelled()) {
+            indexStorage.saveSiteWithLastErrorIndexing(site, statusCode, message);
+        }
+
+        log.error(message);
+        return page;
+    }
+}
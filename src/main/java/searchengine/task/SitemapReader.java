@@ -0,0 +1,142 @@
+package searchengine.task;
+
+import org.apache.log4j.Logger;
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import searchengine.services.IndexingService;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+public class SitemapReader {
+    private static final Logger log = Logger.getLogger(IndexingService.class);
+    private static final int MAX_SITEMAPS = 1000;
+
+    /**
+     * Потоково читает файлы sitemap и sitemap index (в том числе сжатые gzip) и передает ссылки страниц
+     * обработчику, не загружая файлы в память целиком.
+     *
+     * @param requestPermits  выдает разрешение на загрузку файла, которое закрывается после его чтения;
+     *                        чтение прекращается, если разрешение не выдано
+     * @param pageUrlConsumer обработчик ссылок; чтение прекращается, если он вернул false
+     */
+    public static void read(List<String> sitemapUrls, Function<String, Closeable> requestPermits,
+                            Predicate<String> pageUrlConsumer) {
+        Deque<String> sitemapQueue = new ArrayDeque<>(sitemapUrls);
+        Set<String> seenSitemaps = new HashSet<>(sitemapUrls);
+
+        int readSitemaps = 0;
+        while (!sitemapQueue.isEmpty() && readSitemaps++ < MAX_SITEMAPS) {
+            String sitemapUrl = sitemapQueue.poll();
+
+            try (Closeable permit = requestPermits.apply(sitemapUrl);
+                 InputStream stream = permit == null ? null : open(sitemapUrl)) {
+                if (permit == null) {
+                    return;
+                }
+                if (stream == null) {
+                    continue;
+                }
+                boolean completed = parse(stream, pageUrlConsumer, nestedSitemapUrl -> {
+                    if (seenSitemaps.add(nestedSitemapUrl)) {
+                        sitemapQueue.add(nestedSitemapUrl);
+                    }
+                });
+                if (!completed) {
+                    return;
+                }
+            } catch (IOException | XMLStreamException e) {
+                log.warn("Ошибка при чтении карты сайта " + sitemapUrl + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static InputStream open(String sitemapUrl) throws IOException {
+        Connection.Response response = Jsoup.connect(sitemapUrl)
+                .timeout(120000)
+                .userAgent(SiteIndexingTask.USER_AGENT)
+                .ignoreContentType(true)
+                .ignoreHttpErrors(true)
+                .maxBodySize(0)
+                .execute();
+
+        if (response.statusCode() != 200) {
+            return null;
+        }
+
+        BufferedInputStream stream = response.bodyStream();
+        stream.mark(2);
+        int firstByte = stream.read();
+        int secondByte = stream.read();
+        stream.reset();
+
+        return firstByte == 0x1f && secondByte == 0x8b ? new GZIPInputStream(stream) : stream;
+    }
+
+    private static boolean parse(InputStream stream, Predicate<String> pageUrlConsumer,
+                                 Consumer<String> nestedSitemapConsumer)
+            throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        XMLStreamReader reader = factory.createXMLStreamReader(stream);
+        try {
+            // ссылки читаются только из <loc>, вложенных прямо в <url> или <sitemap> пространства имен корня,
+            // чтобы не брать адреса расширений вроде <image:loc> и <video:loc>
+            String rootNamespace = null;
+            String entry = null;
+            int depth = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (--depth < 2) {
+                        entry = null;
+                    }
+                    continue;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+
+                depth++;
+                String namespace = Objects.requireNonNullElse(reader.getNamespaceURI(), "");
+                if (depth == 1) {
+                    rootNamespace = namespace;
+                    continue;
+                }
+                if (!namespace.equals(rootNamespace)) {
+                    continue;
+                }
+
+                String name = reader.getLocalName();
+                if (depth == 2 && (name.equals("url") || name.equals("sitemap"))) {
+                    entry = name;
+                } else if (depth == 3 && entry != null && name.equals("loc")) {
+                    String location = reader.getElementText().trim();
+                    depth--;
+                    if (entry.equals("sitemap")) {
+                        nestedSitemapConsumer.accept(location);
+                    } else if (!pageUrlConsumer.test(location)) {
+                        return false;
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        return true;
+    }
+}
@@ -1,65 +1,196 @@
 package searchengine.task;
 
 import org.apache.log4j.Logger;
+import searchengine.config.CrawlerConfig;
+import searchengine.config.SiteConfig;
 import searchengine.enums.Status;
 import searchengine.models.Site;
 import searchengine.services.IndexingService;
-import searchengine.services.RepositoryService;
+import searchengine.services.PageService;
+import searchengine.storage.IndexStorage;
+import searchengine.storage.PageVersion;
+import searchengine.utils.SimHashIndex;
 
-import java.util.Date;
-import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.ForkJoinPool;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class TaskBuilder {
     private static final Logger log = Logger.getLogger(IndexingService.class);
 
-    public static void makeTaskIndexingOneSite(Site site, RepositoryService repositoryService) {
-        repositoryService.cleanDataSiteForIndexing(site);
-        repositoryService.saveNewSite(site);
+    public static void makeTaskIndexingOneSite(IndexingJob job, SiteConfig siteConfig,
+                                               IndexStorage indexStorage, CrawlerConfig crawlerConfig) {
+        Site site = makeSite(siteConfig);
+        indexStorage.saveNewGeneration(site);
 
-        IndexingRecursiveTask task = makeTask(site, repositoryService);
-        new ForkJoinPool().invoke(task);
+        SiteIndexingTask task = makeTask(site, siteConfig, indexStorage, Map.of(), CrawlBudget.of(siteConfig));
+        runTasks(job, Map.of(task, siteConfig), indexStorage, crawlerConfig);
+    }
 
-        setSiteIndexed(site, repositoryService);
-        IndexingService.isIndexingNow = false;
+    public static void makeTaskIndexingAllSite(IndexingJob job, List<SiteConfig> siteConfigList,
+                                               IndexStorage indexStorage, CrawlerConfig crawlerConfig,
+                                               boolean incremental, boolean quick) {
+        Map<SiteIndexingTask, SiteConfig> taskMap = new LinkedHashMap<>();
+        siteConfigList.forEach(siteConfig -> {
+            Optional<Site> activeSite = incremental ? indexStorage.getSite(siteConfig.getUrl()) : Optional.empty();
+            Site site = activeSite.orElseGet(() -> makeSite(siteConfig));
+            if (activeSite.isPresent()) {
+                indexStorage.saveNewSite(site);
+            } else {
+                indexStorage.saveNewGeneration(site);
+            }
 
-        log.info("Индексация сайта " + site.getUrl() + " завершена");
+            CrawlBudget budget = quick ?
+                    CrawlBudget.quick(siteConfig, crawlerConfig) :
+                    CrawlBudget.of(siteConfig);
+            taskMap.put(makeTask(site, siteConfig, indexStorage,
+                    incremental ? indexStorage.getPageVersions(site) : Map.of(), budget), siteConfig);
+        });
+
+        runTasks(job, taskMap, indexStorage, crawlerConfig);
     }
 
-    public static synchronized void makeTaskIndexingAllSite(List<Site> siteList, RepositoryService repositoryService) {
-        siteList.forEach(repositoryService::saveNewSite);
-        siteList.forEach(site -> {
-            IndexingRecursiveTask task = makeTask(site, repositoryService);
-            new ForkJoinPool().invoke(task);
-            setSiteIndexed(site, repositoryService);
-
-            List<Site> notIndexedSiteList = repositoryService.getSiteRepository()
-                    .findAll()
-                    .stream()
-                    .filter(siteDB -> siteDB.getStatus().equals(Status.INDEXING))
-                    .toList();
-
-            if (notIndexedSiteList.isEmpty()) {
-                IndexingService.isIndexingNow = false;
+    public static void makeTaskResumeIndexing(IndexingJob job, List<SiteConfig> siteConfigList,
+                                              IndexStorage indexStorage, CrawlerConfig crawlerConfig) {
+        Map<SiteIndexingTask, SiteConfig> taskMap = new LinkedHashMap<>();
+        siteConfigList.forEach(siteConfig -> {
+            Optional<Site> existSite = indexStorage.getBuildingSite(siteConfig.getUrl())
+                    .or(() -> indexStorage.getSite(siteConfig.getUrl()));
+            if (existSite.isPresent() && existSite.get().getStatus().equals(Status.INDEXED)) {
+                return;
+            }
+
+            Optional<List<CrawlUrl>> checkpoint = existSite.flatMap(indexStorage::getCheckpoint);
+            if (checkpoint.isEmpty()) {
+                Site site = makeSite(siteConfig);
+                indexStorage.saveNewGeneration(site);
+                taskMap.put(makeTask(site, siteConfig, indexStorage, Map.of(), CrawlBudget.of(siteConfig)),
+                        siteConfig);
+                return;
             }
-            log.info("Индексация сайта " + site.getUrl() + " завершена");
+
+            Site site = existSite.get();
+            indexStorage.saveNewSite(site);
+            taskMap.put(makeResumedTask(site, siteConfig, indexStorage, checkpoint.get()), siteConfig);
+
+            log.info("Индексация сайта " + site.getUrl() + " продолжена с контрольной точки");
         });
 
+        runTasks(job, taskMap, indexStorage, crawlerConfig);
+    }
+
+    private static void runTasks(IndexingJob job, Map<SiteIndexingTask, SiteConfig> taskMap,
+                                 IndexStorage indexStorage, CrawlerConfig crawlerConfig) {
+        try (CrawlPipeline pipeline = new CrawlPipeline(crawlerConfig, indexStorage)) {
+            List<CompletableFuture<Void>> siteTaskList = new ArrayList<>();
+            taskMap.forEach((task, siteConfig) -> {
+                log.info("Индексация страницы " + task.getSite().getUrl() + ", задание " + job.getId());
+                job.addTask(task);
+                siteTaskList.add(pipeline.crawl(task, siteConfig)
+                        .thenRun(() -> finishTask(task, indexStorage)));
+            });
+
+            CompletableFuture.allOf(siteTaskList.toArray(CompletableFuture[]::new)).join();
+        } finally {
+            taskMap.keySet().forEach(task -> indexStorage.releaseLemmaDictionary(task.getSite()));
+        }
+    }
+
+    private static Site makeSite(SiteConfig siteConfig) {
+        Site site = new Site();
+        site.setUrl(siteConfig.getUrl());
+        site.setName(siteConfig.getName());
+        return site;
+    }
+
+    private static SiteIndexingTask makeTask(Site site, SiteConfig siteConfig, IndexStorage indexStorage,
+                                             Map<String, PageVersion> knownPages, CrawlBudget budget) {
+        SiteIndexingTask task = new SiteIndexingTask(indexStorage, site, makeFrontier(siteConfig),
+                makeCanonicalizer(siteConfig), makeDuplicateIndex(siteConfig, knownPages.values()), budget,
+                knownPages);
+        task.offer(site.getUrl(), 0);
+        knownPages.keySet().forEach(path -> task.offer(PageService.makeUrl(site, path), 1));
+        return task;
+    }
+
+    private static SiteIndexingTask makeResumedTask(Site site, SiteConfig siteConfig,
+                                                    IndexStorage indexStorage, List<CrawlUrl> checkpoint) {
+        Collection<PageVersion> savedPages = indexStorage.getPageVersions(site).values();
+        SiteIndexingTask task = new SiteIndexingTask(indexStorage, site, makeFrontier(siteConfig),
+                makeCanonicalizer(siteConfig), makeDuplicateIndex(siteConfig, savedPages), CrawlBudget.of(siteConfig),
+                Map.of());
+        savedPages.forEach(page -> task.getFrontier().markVisited(PageService.makeUrl(site, page.path())));
+        task.getCrawledPages().addAndGet(savedPages.size());
+        checkpoint.forEach(crawlUrl -> task.offer(crawlUrl.url(), crawlUrl.depth()));
+        return task;
+    }
+
+    private static CrawlFrontier makeFrontier(SiteConfig siteConfig) {
+        return new CrawlFrontier(siteConfig.getBloomFilterExpectedUrls(), siteConfig.getUrlPatternWeights());
+    }
+
+    private static UrlCanonicalizer makeCanonicalizer(SiteConfig siteConfig) {
+        return new UrlCanonicalizer(siteConfig.getUrl(), siteConfig.getAllowedQueryParameters());
+    }
+
+    private static SimHashIndex makeDuplicateIndex(SiteConfig siteConfig,
+                                                   Collection<PageVersion> savedPages) {
+        if (siteConfig.getNearDuplicateDistance() < 0) {
+            return null;
+        }
+
+        SimHashIndex duplicateIndex = new SimHashIndex(siteConfig.getNearDuplicateDistance());
+        savedPages.stream()
+                .filter(page -> page.simHash() != null && page.duplicateOf() == null)
+                .forEach(page -> duplicateIndex.add(page.path(), page.simHash()));
+        return duplicateIndex;
+    }
+
+    private static void finishTask(SiteIndexingTask task, IndexStorage indexStorage) {
+        if (task.isCancelled()) {
+            return;
+        }
+
+        Site site = task.getSite();
+        indexStorage.flushLemmaFrequencies(site);
+
+        Optional<String> failure = getCrawlFailure(task, indexStorage);
+        if (failure.isPresent()) {
+            indexStorage.failSiteIndexing(site, failure.get());
+            log.error("Индексация сайта " + site.getUrl() + " не удалась: " + failure.get());
+            return;
+        }
+
+        if (!task.getKnownPages().isEmpty()) {
+            indexStorage.deleteUnusedLemmas(site);
+        }
+        setSiteIndexed(site, indexStorage);
+
+        log.info("Индексация сайта " + site.getUrl() + " завершена");
     }
 
-    private static synchronized IndexingRecursiveTask makeTask(Site site, RepositoryService repositoryService) {
-        log.info("Индексация страницы " + site.getUrl());
-        return new IndexingRecursiveTask(repositoryService, site.getUrl(), site);
+    /**
+     * @return причина неудачи обхода: главная страница не загрузилась или в поколении нет ни одной
+     * успешно загруженной страницы
+     */
+    private static Optional<String> getCrawlFailure(SiteIndexingTask task, IndexStorage indexStorage) {
+        if (task.getRootFailure().isPresent()) {
+            return task.getRootFailure();
+        }
+        if (indexStorage.getIndexedPageCount(task.getSite().getId()) == 0) {
+            return Optional.of("Не загружено ни одной страницы сайта");
+        }
+        return Optional.empty();
     }
 
-    private static synchronized void setSiteIndexed(Site site, RepositoryService repositoryService) {
-        Optional<Site> optionalSite = repositoryService.getSite(site.getUrl());
+    /**
+     * Переключает поиск на построенное поколение индекса сайта. Остановленный или неудачный обход
+     * не трогает активное поколение: недостроенное остается для возобновления или удаления.
+     */
+    private static synchronized void setSiteIndexed(Site site, IndexStorage indexStorage) {
+        Optional<Site> optionalSite = indexStorage.getSiteById(site.getId());
         optionalSite.ifPresent(existSite -> {
-            if (!existSite.getStatus().equals(Status.FAILED)) {
-                existSite.setStatus(Status.INDEXED);
-                existSite.setStatusTime(new Date());
-                repositoryService.saveSite(existSite);
+            if (existSite.getStatus().equals(Status.INDEXING)) {
+                indexStorage.activateGeneration(existSite);
             }
         });
     }
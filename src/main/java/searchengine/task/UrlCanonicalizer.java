@@ -0,0 +1,122 @@
+package searchengine.task;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Приводит ссылки сайта к единому виду, чтобы один и тот же документ не загружался под разными адресами.
+ */
+public class UrlCanonicalizer {
+    private static final Set<String> SKIPPED_EXTENSIONS = Set.of(
+            "pdf", "doc", "docx", "rtf", "odt", "xls", "xlsx", "ppt", "pptx", "txt", "csv", "json", "xml",
+            "zip", "rar", "7z", "gz", "tar", "exe", "apk", "dmg", "iso",
+            "jpg", "jpeg", "png", "gif", "bmp", "svg", "webp", "ico", "tif", "tiff",
+            "mp3", "mp4", "avi", "mov", "wmv", "flv", "webm", "wav", "ogg",
+            "css", "js", "woff", "woff2", "ttf", "eot");
+
+    private final String scheme;
+    private final String host;
+    private final String bareHost;
+    private final int port;
+    private final String basePath;
+    private final Set<String> allowedQueryParameters;
+
+    /**
+     * @param allowedQueryParameters параметры запроса, которые меняют содержимое страницы и сохраняются в ссылке.
+     *                               Остальные параметры отбрасываются
+     */
+    public UrlCanonicalizer(String siteUrl, Collection<String> allowedQueryParameters) {
+        URI siteUri = URI.create(siteUrl.trim());
+        scheme = siteUri.getScheme().toLowerCase();
+        host = siteUri.getHost().toLowerCase();
+        bareHost = stripWww(host);
+        port = normalizePort(scheme, siteUri.getPort());
+
+        String path = siteUri.getRawPath() == null ? "" : siteUri.getRawPath();
+        basePath = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+
+        this.allowedQueryParameters = Set.copyOf(allowedQueryParameters);
+    }
+
+    /**
+     * @return каноническая ссылка или пустое значение, если ссылка ведет за пределы сайта или не на HTML-страницу
+     */
+    public Optional<String> canonicalize(String link) {
+        URI uri;
+        try {
+            uri = new URI(link.trim().replace(" ", "%20")).normalize();
+        } catch (URISyntaxException e) {
+            return Optional.empty();
+        }
+
+        String linkScheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase();
+        if (!linkScheme.equals("http") && !linkScheme.equals("https")) {
+            return Optional.empty();
+        }
+        if (uri.getHost() == null || !stripWww(uri.getHost().toLowerCase()).equals(bareHost)
+                || normalizePort(linkScheme, uri.getPort()) != port) {
+            return Optional.empty();
+        }
+
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        if (!basePath.isEmpty() && !path.equals(basePath) && !path.startsWith(basePath + "/")) {
+            return Optional.empty();
+        }
+        if (hasSkippedExtension(path)) {
+            return Optional.empty();
+        }
+
+        StringBuilder canonicalUrl = new StringBuilder(scheme).append("://").append(host);
+        if (port != -1) {
+            canonicalUrl.append(':').append(port);
+        }
+        canonicalUrl.append(path);
+
+        String query = filterQuery(uri.getRawQuery());
+        if (!query.isEmpty()) {
+            canonicalUrl.append('?').append(query);
+        }
+
+        return Optional.of(canonicalUrl.toString());
+    }
+
+    private String filterQuery(String rawQuery) {
+        if (rawQuery == null || allowedQueryParameters.isEmpty()) {
+            return "";
+        }
+
+        return Arrays.stream(rawQuery.split("&"))
+                .filter(parameter -> {
+                    int separator = parameter.indexOf('=');
+                    String name = separator < 0 ? parameter : parameter.substring(0, separator);
+                    return allowedQueryParameters.contains(name);
+                })
+                .sorted()
+                .collect(Collectors.joining("&"));
+    }
+
+    private static boolean hasSkippedExtension(String path) {
+        int segmentStart = path.lastIndexOf('/');
+        int extensionStart = path.lastIndexOf('.');
+        if (extensionStart <= segmentStart) {
+            return false;
+        }
+        return SKIPPED_EXTENSIONS.contains(path.substring(extensionStart + 1).toLowerCase());
+    }
+
+    private static String stripWww(String host) {
+        return host.startsWith("www.") ? host.substring(4) : host;
+    }
+
+    private static int normalizePort(String scheme, int port) {
+        if (port == 80 && scheme.equals("http") || port == 443 && scheme.equals("https")) {
+            return -1;
+        }
+        return port;
+    }
+}
@@ -0,0 +1,69 @@
+package searchengine.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class BloomFilter {
+    private final AtomicLongArray bits;
+    private final int bitCount;
+    private final int hashCount;
+
+    public BloomFilter(int expectedInsertions, double falsePositiveRate) {
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+
+        bitCount = (int) Math.min(Math.max(optimalBits, Long.SIZE), Integer.MAX_VALUE - Long.SIZE);
+        hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * ln2));
+        bits = new AtomicLongArray((bitCount + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    /**
+     * Добавляет значение в фильтр.
+     *
+     * @return true, если значения в фильтре гарантированно не было
+     */
+    public boolean put(String value) {
+        long hash = hash64(value);
+        int firstHash = (int) hash;
+        int secondHash = (int) (hash >>> 32);
+
+        boolean changed = false;
+        for (int i = 1; i <= hashCount; i++) {
+            int combinedHash = firstHash + i * secondHash;
+            if (combinedHash < 0) {
+                combinedHash = ~combinedHash;
+            }
+            changed |= setBit(combinedHash % bitCount);
+        }
+
+        return changed;
+    }
+
+    private boolean setBit(int index) {
+        int wordIndex = index >>> 6;
+        long mask = 1L << index;
+
+        long word;
+        do {
+            word = bits.get(wordIndex);
+            if ((word & mask) != 0) {
+                return false;
+            }
+        } while (!bits.compareAndSet(wordIndex, word, word | mask));
+
+        return true;
+    }
+
+    private static long hash64(String value) {
+        long hash = 1125899906842597L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = 31 * hash + value.charAt(i);
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,47 @@
+package searchengine.utils;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Потокобезопасный кэш ограниченного размера. При переполнении вытесняется часть произвольных записей:
+ * это дешевле точного LRU и не требует общей блокировки на чтение.
+ */
+public class BoundedCache<K, V> {
+    private static final int EVICTION_PERCENT = 10;
+
+    private final Map<K, V> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int capacity;
+
+    public BoundedCache(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    public V get(K key, Function<K, V> loader) {
+        V value = entries.get(key);
+        if (value != null) {
+            return value;
+        }
+
+        value = loader.apply(key);
+        if (entries.putIfAbsent(key, value) == null && size.incrementAndGet() > capacity) {
+            evict();
+        }
+        return value;
+    }
+
+    private void evict() {
+        int toEvict = Math.max(1, capacity * EVICTION_PERCENT / 100);
+        Iterator<K> iterator = entries.keySet().iterator();
+        while (toEvict > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            size.decrementAndGet();
+            toEvict--;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package searchengine.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Сжатие содержимого страниц. Каждый блок начинается с заголовка: байт кодека и размер исходных данных.
+ */
+public class ContentCodec {
+    private static final byte CODEC_NONE = 0;
+    private static final byte CODEC_DEFLATE = 1;
+    private static final int HEADER_SIZE = 1 + Integer.BYTES;
+    private static final int MIN_COMPRESSED_SIZE = 256;
+
+    public static byte[] compress(String content) {
+        if (content == null) {
+            return null;
+        }
+
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        if (data.length < MIN_COMPRESSED_SIZE) {
+            return ByteBuffer.allocate(HEADER_SIZE + data.length)
+                    .put(CODEC_NONE)
+                    .putInt(data.length)
+                    .put(data)
+                    .array();
+        }
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 4 + HEADER_SIZE);
+            output.write(CODEC_DEFLATE);
+            output.writeBytes(ByteBuffer.allocate(Integer.BYTES).putInt(data.length).array());
+
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static String decompress(byte[] block) {
+        if (block == null) {
+            return null;
+        }
+
+        ByteBuffer header = ByteBuffer.wrap(block, 0, HEADER_SIZE);
+        byte codec = header.get();
+        int size = header.getInt();
+
+        if (codec == CODEC_NONE) {
+            return new String(block, HEADER_SIZE, size, StandardCharsets.UTF_8);
+        }
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(block, HEADER_SIZE, block.length - HEADER_SIZE);
+            byte[] data = new byte[size];
+            int length = 0;
+            while (length < size && !inflater.finished()) {
+                length += inflater.inflate(data, length, size - length);
+            }
+            return new String(data, 0, length, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Поврежденное содержимое страницы", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package searchengine.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Кодирует возрастающий список позиций слова на странице: хранятся разности соседних позиций
+ * в формате varint (7 бит на байт), поэтому большинство позиций занимает один байт.
+ */
+public final class PositionCodec {
+    private PositionCodec() {
+    }
+
+    public static byte[] encode(int[] positions) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(positions.length + 4);
+        int previous = 0;
+        for (int position : positions) {
+            int delta = position - previous;
+            while ((delta & ~0x7F) != 0) {
+                bytes.write((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            bytes.write(delta);
+            previous = position;
+        }
+        return bytes.toByteArray();
+    }
+
+    public static int[] decode(byte[] data) {
+        if (data == null) {
+            return new int[0];
+        }
+
+        int[] positions = new int[data.length];
+        int count = 0;
+        int previous = 0;
+        int delta = 0;
+        int shift = 0;
+        for (byte b : data) {
+            delta |= (b & 0x7F) << shift;
+            if ((b & 0x80) != 0) {
+                shift += 7;
+                continue;
+            }
+            previous += delta;
+            positions[count++] = previous;
+            delta = 0;
+            shift = 0;
+        }
+        return Arrays.copyOf(positions, count);
+    }
+}
@@ -0,0 +1,86 @@
+package searchengine.utils;
+
+import java.util.OptionalLong;
+
+/**
+ * 64-битный отпечаток текста: у почти одинаковых текстов отпечатки различаются в небольшом числе бит.
+ */
+public final class SimHash {
+    private static final int SHINGLE_SIZE = 3;
+    private static final int MIN_WORDS = 20;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private SimHash() {
+    }
+
+    /**
+     * Считает отпечаток по шинглам из трех подряд идущих слов.
+     *
+     * @return пустое значение, если текст слишком короткий для надежного сравнения
+     */
+    public static OptionalLong fingerprint(String text) {
+        long[] window = new long[SHINGLE_SIZE];
+        int[] weights = new int[Long.SIZE];
+        int wordCount = 0;
+
+        long wordHash = FNV_OFFSET;
+        boolean inWord = false;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                wordHash = (wordHash ^ Character.toLowerCase(c)) * FNV_PRIME;
+                inWord = true;
+                continue;
+            }
+            if (!inWord) {
+                continue;
+            }
+
+            window[wordCount % SHINGLE_SIZE] = wordHash;
+            wordCount++;
+            if (wordCount >= SHINGLE_SIZE) {
+                addShingle(weights, window, wordCount);
+            }
+            wordHash = FNV_OFFSET;
+            inWord = false;
+        }
+
+        if (wordCount < MIN_WORDS) {
+            return OptionalLong.empty();
+        }
+
+        long fingerprint = 0;
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return OptionalLong.of(fingerprint);
+    }
+
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    private static void addShingle(int[] weights, long[] window, int wordCount) {
+        long hash = 0;
+        for (int i = 0; i < SHINGLE_SIZE; i++) {
+            hash = hash * 31 + window[(wordCount + i) % SHINGLE_SIZE];
+        }
+        hash = mix(hash);
+
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            weights[bit] += ((hash >>> bit) & 1) == 1 ? 1 : -1;
+        }
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,66 @@
+package searchengine.utils;
+
+import java.util.*;
+
+/**
+ * Индекс отпечатков {@link SimHash} одного сайта.
+ * Отпечаток делится на maxDistance + 1 полос: у отпечатков, отличающихся не более чем в maxDistance бит,
+ * хотя бы одна полоса совпадает, поэтому сравнивать приходится только с отпечатками из тех же корзин.
+ */
+public class SimHashIndex {
+    private final int maxDistance;
+    private final int[] bandStarts;
+    private final List<Map<Long, List<Entry>>> bands = new ArrayList<>();
+
+    public SimHashIndex(int maxDistance) {
+        this.maxDistance = maxDistance;
+
+        int bandCount = Math.min(maxDistance + 1, Long.SIZE);
+        bandStarts = new int[bandCount + 1];
+        for (int band = 0; band <= bandCount; band++) {
+            bandStarts[band] = band * Long.SIZE / bandCount;
+        }
+        for (int band = 0; band < bandCount; band++) {
+            bands.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Ищет страницу с близким отпечатком, а если такой нет, добавляет отпечаток в индекс.
+     *
+     * @param key путь страницы; совпадение со своим же путем дубликатом не считается
+     * @return путь ранее проиндексированной страницы, дубликатом которой является данная
+     */
+    public synchronized Optional<String> findOrAdd(String key, long fingerprint) {
+        for (int band = 0; band < bands.size(); band++) {
+            List<Entry> bucket = bands.get(band).get(getBandKey(fingerprint, band));
+            if (bucket == null) {
+                continue;
+            }
+            for (Entry entry : bucket) {
+                if (!entry.key().equals(key) && SimHash.distance(entry.fingerprint(), fingerprint) <= maxDistance) {
+                    return Optional.of(entry.key());
+                }
+            }
+        }
+
+        add(key, fingerprint);
+        return Optional.empty();
+    }
+
+    public synchronized void add(String key, long fingerprint) {
+        Entry entry = new Entry(key, fingerprint);
+        for (int band = 0; band < bands.size(); band++) {
+            bands.get(band).computeIfAbsent(getBandKey(fingerprint, band), bandKey -> new ArrayList<>()).add(entry);
+        }
+    }
+
+    private long getBandKey(long fingerprint, int band) {
+        int width = bandStarts[band + 1] - bandStarts[band];
+        long mask = width == Long.SIZE ? -1L : (1L << width) - 1;
+        return (fingerprint >>> bandStarts[band]) & mask;
+    }
+
+    private record Entry(String key, long fingerprint) {
+    }
+}
@@ -0,0 +1,73 @@
+package searchengine.utils;
+
+/**
+ * Выделяет русские слова за один проход по тексту: буквы сразу приводятся к нижнему регистру,
+ * а ё заменяется на е, поэтому промежуточные копии текста не создаются.
+ * Позиция слова - его порядковый номер среди всех русских слов текста, включая служебные.
+ */
+public final class WordTokenizer {
+    private WordTokenizer() {
+    }
+
+    @FunctionalInterface
+    public interface WordConsumer {
+        void accept(String word, int position);
+    }
+
+    @FunctionalInterface
+    public interface BoundsConsumer {
+        /**
+         * @param start индекс первого символа слова в тексте
+         * @param end   индекс символа, следующего за словом
+         * @return false, чтобы прекратить разбор
+         */
+        boolean accept(int position, int start, int end);
+    }
+
+    public static void forEachWord(String text, WordConsumer consumer) {
+        char[] word = new char[64];
+        forEachWordBounds(text, (position, start, end) -> {
+            char[] buffer = end - start <= word.length ? word : new char[end - start];
+            for (int i = start; i < end; i++) {
+                buffer[i - start] = normalizeChar(text.charAt(i));
+            }
+            consumer.accept(new String(buffer, 0, end - start), position);
+            return true;
+        });
+    }
+
+    public static void forEachWordBounds(String text, BoundsConsumer consumer) {
+        int position = 0;
+        int wordStart = -1;
+
+        for (int i = 0, textLength = text.length(); i <= textLength; i++) {
+            boolean isLetter = i < textLength && normalizeChar(text.charAt(i)) != 0;
+            if (isLetter) {
+                if (wordStart < 0) {
+                    wordStart = i;
+                }
+            } else if (wordStart >= 0) {
+                if (!consumer.accept(position++, wordStart, i)) {
+                    return;
+                }
+                wordStart = -1;
+            }
+        }
+    }
+
+    /**
+     * @return строчная русская буква или 0 для любого другого символа
+     */
+    public static char normalizeChar(char c) {
+        if (c >= 'а' && c <= 'я') {
+            return c;
+        }
+        if (c >= 'А' && c <= 'Я') {
+            return (char) (c + ('а' - 'А'));
+        }
+        if (c == 'ё' || c == 'Ё') {
+            return 'е';
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,63 @@
+create table if not exists site (
+    id          int auto_increment primary key,
+    status      enum ('INDEXING', 'INDEXED', 'FAILED') not null,
+    status_time datetime                              not null,
+    last_error  text,
+    url         varchar(255)                          not null,
+    name        varchar(255)                          not null,
+    constraint uk_site_url unique (url)
+) engine = InnoDB;
+
+create table if not exists page (
+    id            int auto_increment primary key,
+    site_id       int          not null,
+    path          varchar(512) not null,
+    code          int          not null,
+    title         text,
+    etag          varchar(255),
+    last_modified varchar(64),
+    content_hash  char(32),
+    sim_hash      bigint,
+    duplicate_of  text,
+    constraint uk_page_site_path unique (site_id, path),
+    constraint fk_page_site foreign key (site_id) references site (id)
+) engine = InnoDB;
+
+create table if not exists page_content (
+    page_id int not null primary key,
+    html    mediumblob,
+    text    mediumblob
+) engine = InnoDB;
+
+-- уникальный ключ (lemma, site_id) обслуживает поиск леммы как по всем сайтам, так и по одному сайту
+create table if not exists lemma (
+    id        int auto_increment primary key,
+    site_id   int          not null,
+    lemma     varchar(255) not null,
+    frequency int          not null,
+    constraint uk_lemma_lemma_site unique (lemma, site_id),
+    constraint fk_lemma_site foreign key (site_id) references site (id),
+    index idx_lemma_site_frequency (site_id, frequency),
+    index idx_lemma_frequency (frequency)
+) engine = InnoDB;
+
+-- (lemma_id, page_id, lemma_rank) покрывает выборку страниц по лемме и расчет релевантности без чтения строк
+create table if not exists search_index (
+    id         int auto_increment primary key,
+    page_id    int   not null,
+    lemma_id   int   not null,
+    lemma_rank float not null,
+    positions  blob,
+    constraint uk_search_index_page_lemma unique (page_id, lemma_id),
+    index idx_search_index_lemma_page (lemma_id, page_id, lemma_rank)
+) engine = InnoDB;
+
+create table if not exists crawl_checkpoint (
+    id            int auto_increment primary key,
+    site_id       int      not null,
+    pending_urls  longblob not null,
+    pending_count int      not null,
+    saved_time    datetime not null,
+    constraint uk_crawl_checkpoint_site unique (site_id),
+    constraint fk_crawl_checkpoint_site foreign key (site_id) references site (id)
+) engine = InnoDB;
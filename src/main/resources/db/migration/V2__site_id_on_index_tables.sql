@@ -0,0 +1,10 @@
+-- site_id в таблицах индекса и содержимого страниц позволяет удалять данные сайта без соединения со страницами
+alter table search_index add column site_id int null after id;
+update search_index s join page p on p.id = s.page_id set s.site_id = p.site_id;
+delete from search_index where site_id is null;
+alter table search_index modify site_id int not null, add index idx_search_index_site (site_id);
+
+alter table page_content add column site_id int null after page_id;
+update page_content c join page p on p.id = c.page_id set c.site_id = p.site_id;
+delete from page_content where site_id is null;
+alter table page_content modify site_id int not null, add index idx_page_content_site (site_id);
@@ -0,0 +1,12 @@
+-- строка site - поколение индекса сайта; поиск читает только активное поколение каждого адреса
+alter table site add column active boolean not null default false after id;
+update site set active = true;
+
+set @drop_site_url = (select if(count(*) > 0, 'alter table site drop index uk_site_url', 'do 0')
+                      from information_schema.statistics
+                      where table_schema = database() and table_name = 'site' and index_name = 'uk_site_url');
+prepare drop_site_url from @drop_site_url;
+execute drop_site_url;
+deallocate prepare drop_site_url;
+
+alter table site add index idx_site_url_active (url, active);
@@ -0,0 +1,51 @@
+-- базы, созданные до перехода на Flyway, получают версию 1 без выполнения V1__create_schema.sql,
+-- поэтому индексы из V1 досоздаются здесь; на базе, созданной миграциями, каждая команда ничего не делает
+alter table page modify path varchar(512) not null;
+
+set @ddl = (select if(count(*) = 0, 'alter table page add constraint uk_page_site_path unique (site_id, path)', 'do 0')
+            from information_schema.statistics
+            where table_schema = database() and table_name = 'page' and index_name = 'uk_page_site_path');
+prepare ddl from @ddl;
+execute ddl;
+deallocate prepare ddl;
+
+set @ddl = (select if(count(*) = 0, 'alter table lemma add constraint uk_lemma_lemma_site unique (lemma, site_id)', 'do 0')
+            from information_schema.statistics
+            where table_schema = database() and table_name = 'lemma' and index_name = 'uk_lemma_lemma_site');
+prepare ddl from @ddl;
+execute ddl;
+deallocate prepare ddl;
+
+set @ddl = (select if(count(*) = 0, 'alter table lemma add index idx_lemma_site_frequency (site_id, frequency)', 'do 0')
+            from information_schema.statistics
+            where table_schema = database() and table_name = 'lemma' and index_name = 'idx_lemma_site_frequency');
+prepare ddl from @ddl;
+execute ddl;
+deallocate prepare ddl;
+
+set @ddl = (select if(count(*) = 0, 'alter table lemma add index idx_lemma_frequency (frequency)', 'do 0')
+            from information_schema.statistics
+            where table_schema = database() and table_name = 'lemma' and index_name = 'idx_lemma_frequency');
+prepare ddl from @ddl;
+execute ddl;
+deallocate prepare ddl;
+
+set @ddl = (select if(count(*) = 0,
+                      'alter table search_index add constraint uk_search_index_page_lemma unique (page_id, lemma_id)',
+                      'do 0')
+            from information_schema.statistics
+            where table_schema = database() and table_name = 'search_index'
+              and index_name = 'uk_search_index_page_lemma');
+prepare ddl from @ddl;
+execute ddl;
+deallocate prepare ddl;
+
+set @ddl = (select if(count(*) = 0,
+                      'alter table search_index add index idx_search_index_lemma_page (lemma_id, page_id, lemma_rank)',
+                      'do 0')
+            from information_schema.statistics
+            where table_schema = database() and table_name = 'search_index'
+              and index_name = 'idx_search_index_lemma_page');
+prepare ddl from @ddl;
+execute ddl;
+deallocate prepare ddl;
@@ -0,0 +1,53 @@
+-- схемы, созданные Hibernate до перехода на Flyway, получают версию 0, и V1 досоздает в них только недостающие
+-- таблицы; столбцы, появившиеся в уже существующих таблицах, добавляются здесь, на новой базе команды ничего не делают
+-- содержимое таких страниц в page_content не переносится: без хеша содержимого они загружаются заново
+-- при следующей индексации
+
+set @ddl = (select if(count(*) = 0, 'alter table page add column title text null after code', 'do 0')
+            from information_schema.columns
+            where table_schema = database() and table_name = 'page' and column_name = 'title');
+prepare ddl from @ddl;
+execute ddl;
+deallocate prepare ddl;
+
+set @ddl = (select if(count(*) = 0, 'alter table page add column etag varchar(255) null after title', 'do 0')
+            from information_schema.columns
+            where table_schema = database() and table_name = 'page' and column_name = 'etag');
+prepare ddl from @ddl;
+execute ddl;
+deallocate prepare ddl;
+
+set @ddl = (select if(count(*) = 0, 'alter table page add column last_modified varchar(64) null after etag', 'do 0')
+            from information_schema.columns
+            where table_schema = database() and table_name = 'page' and column_name = 'last_modified');
+prepare ddl from @ddl;
+execute ddl;
+deallocate prepare ddl;
+
+set @ddl = (select if(count(*) = 0, 'alter table page add column content_hash char(32) null after last_modified', 'do 0')
+            from information_schema.columns
+            where table_schema = database() and table_name = 'page' and column_name = 'content_hash');
+prepare ddl from @ddl;
+execute ddl;
+deallocate prepare ddl;
+
+set @ddl = (select if(count(*) = 0, 'alter table page add column sim_hash bigint null after content_hash', 'do 0')
+            from information_schema.columns
+            where table_schema = database() and table_name = 'page' and column_name = 'sim_hash');
+prepare ddl from @ddl;
+execute ddl;
+deallocate prepare ddl;
+
+set @ddl = (select if(count(*) = 0, 'alter table page add column duplicate_of text null after sim_hash', 'do 0')
+            from information_schema.columns
+            where table_schema = database() and table_name = 'page' and column_name = 'duplicate_of');
+prepare ddl from @ddl;
+execute ddl;
+deallocate prepare ddl;
+
+set @ddl = (select if(count(*) = 0, 'alter table search_index add column positions blob null after lemma_rank', 'do 0')
+            from information_schema.columns
+            where table_schema = database() and table_name = 'search_index' and column_name = 'positions');
+prepare ddl from @ddl;
+execute ddl;
+deallocate prepare ddl;
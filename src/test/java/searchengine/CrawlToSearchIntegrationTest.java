@@ -0,0 +1,123 @@
+package searchengine;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import searchengine.config.CrawlerConfig;
+import searchengine.config.SiteConfig;
+import searchengine.dto.response.Response;
+import searchengine.dto.response.SearchingResponse;
+import searchengine.dto.searching.SearchingDto;
+import searchengine.enums.Status;
+import searchengine.models.Site;
+import searchengine.services.LemmaService;
+import searchengine.services.SearchingService;
+import searchengine.storage.InMemoryIndexStorage;
+import searchengine.task.IndexingJob;
+import searchengine.task.TaskBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Обход сайта на локальном HTTP-сервере и поиск по построенному индексу в хранилище в памяти.
+ */
+public class CrawlToSearchIntegrationTest {
+    private final Map<String, String> sitePages = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private String siteUrl;
+    private InMemoryIndexStorage indexStorage;
+
+    @Before
+    public void setUp() throws IOException {
+        LemmaService.init();
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            String html = sitePages.get(exchange.getRequestURI().getPath());
+            byte[] body = (html == null ? "Not found" : html).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(html == null ? 404 : 200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+        server.start();
+
+        siteUrl = "http://localhost:" + server.getAddress().getPort();
+        indexStorage = new InMemoryIndexStorage();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test(timeout = 60000)
+    public void crawledPagesAreFoundBySearch() {
+        sitePages.put("/", page("Зоопарк", "Добро пожаловать в зоопарк. <a href=\"/cats\">Кошки</a> "
+                + "<a href=\"/dogs\">Собаки</a>"));
+        sitePages.put("/cats", page("Кошки", "Рыжие кошки любят спать на теплом диване"));
+        sitePages.put("/dogs", page("Собаки", "Большие собаки охраняют дом и любят гулять"));
+
+        TaskBuilder.makeTaskIndexingOneSite(new IndexingJob(), makeSiteConfig(), indexStorage, makeCrawlerConfig());
+
+        Site site = indexStorage.getSite(siteUrl).orElseThrow();
+        assertEquals(Status.INDEXED, site.getStatus());
+        assertEquals(3, indexStorage.getIndexedPageCount(site.getId()));
+
+        Response response = new SearchingService(indexStorage).searchText("кошки спать", siteUrl, 0, 10);
+        assertTrue(response instanceof SearchingResponse);
+        List<SearchingDto> results = ((SearchingResponse) response).getData();
+        assertEquals("/cats", results.get(0).getUri());
+        assertTrue(results.get(0).getSnippet().contains("<b>"));
+        assertTrue(results.stream().noneMatch(result -> result.getUri().equals("/dogs")));
+    }
+
+    @Test(timeout = 60000)
+    public void failedReindexKeepsActiveGeneration() {
+        sitePages.put("/", page("Кошки", "Рыжие кошки любят спать на теплом диване"));
+        TaskBuilder.makeTaskIndexingOneSite(new IndexingJob(), makeSiteConfig(), indexStorage, makeCrawlerConfig());
+        Site activeSite = indexStorage.getSite(siteUrl).orElseThrow();
+
+        sitePages.clear();
+        TaskBuilder.makeTaskIndexingOneSite(new IndexingJob(), makeSiteConfig(), indexStorage, makeCrawlerConfig());
+
+        assertEquals(activeSite.getId(), indexStorage.getSite(siteUrl).orElseThrow().getId());
+        Site failedSite = indexStorage.getBuildingSite(siteUrl).orElseThrow();
+        assertEquals(Status.FAILED, failedSite.getStatus());
+        assertNotNull(failedSite.getLastError());
+    }
+
+    private SiteConfig makeSiteConfig() {
+        SiteConfig siteConfig = new SiteConfig();
+        siteConfig.setUrl(siteUrl);
+        siteConfig.setName("Зоопарк");
+        siteConfig.setBloomFilterExpectedUrls(1000);
+        siteConfig.setRequestsPerSecond(100);
+        return siteConfig;
+    }
+
+    private static CrawlerConfig makeCrawlerConfig() {
+        CrawlerConfig crawlerConfig = new CrawlerConfig();
+        crawlerConfig.setFetchThreads(4);
+        crawlerConfig.setParseThreads(2);
+        crawlerConfig.setStoreThreads(1);
+        crawlerConfig.setQueueCapacity(16);
+        crawlerConfig.setCheckpointIntervalSeconds(0);
+        crawlerConfig.setMaxRetries(0);
+        return crawlerConfig;
+    }
+
+    private static String page(String title, String body) {
+        return "<html><head><title>" + title + "</title></head><body>" + body + "</body></html>";
+    }
+}
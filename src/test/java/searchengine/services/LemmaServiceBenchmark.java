@@ -0,0 +1,123 @@
+package searchengine.services;
+
+import org.apache.lucene.morphology.LuceneMorphology;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Сравнивает лемматизацию текста страницы с прежней реализацией, которая на каждую страницу загружала
+ * словари морфологии и разбирала текст регулярными выражениями и стримами.
+ * Не входит в набор тестов; запуск:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=searchengine.services.LemmaServiceBenchmark
+ */
+public class LemmaServiceBenchmark {
+    private static final String[] WORDS = {
+            "поисковый", "движок", "индексирует", "страницы", "сайтов", "и", "находит", "нужные", "документы",
+            "по", "запросу", "пользователя", "Быстрый", "обход", "ссылок", "на", "главной", "странице", "леммы",
+            "слов", "хранятся", "в", "базе", "данных", "вместе", "с", "позициями", "Кошки", "собаки", "жили",
+            "дружно", "но", "иногда", "спорили", "о", "погоде", "за", "окном"};
+    private static final String[] SEPARATORS = {" ", " ", " ", ", ", ". ", " - ", "! ", " (2024) "};
+    private static final int TEXT_WORDS = 20_000;
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 20;
+
+    public static void main(String[] args) {
+        String text = makeText();
+        Map<String, Integer> expected = legacyLemmas(text);
+        Map<String, int[]> actual = LemmaService.getTextLemmas(text);
+        expected.forEach((lemma, count) -> {
+            if (!actual.containsKey(lemma) || actual.get(lemma).length != count) {
+                throw new IllegalStateException("Реализации по-разному считают лемму " + lemma);
+            }
+        });
+        if (!expected.keySet().equals(actual.keySet())) {
+            throw new IllegalStateException("Реализации находят разные наборы лемм");
+        }
+
+        Result legacy = measure(() -> legacyLemmas(text));
+        Result current = measure(() -> LemmaService.getTextLemmas(text));
+
+        System.out.printf("Текст: %d слов, %d символов%n", TEXT_WORDS, text.length());
+        System.out.printf("прежняя:          %8.3f мс/страница, %10d байт/страница%n",
+                legacy.millisPerOp(), legacy.bytesPerOp());
+        System.out.printf("один проход:       %8.3f мс/страница, %10d байт/страница%n",
+                current.millisPerOp(), current.bytesPerOp());
+        System.out.printf("ускорение: %.2fx, памяти меньше в %.2f раза%n",
+                legacy.millisPerOp() / current.millisPerOp(), (double) legacy.bytesPerOp() / current.bytesPerOp());
+    }
+
+    private record Result(double millisPerOp, long bytesPerOp) {
+    }
+
+    private static Result measure(Runnable operation) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            operation.run();
+        }
+
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            operation.run();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long allocatedBytes = threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+
+        return new Result(elapsedNanos / 1e6 / MEASURED_ITERATIONS, allocatedBytes / MEASURED_ITERATIONS);
+    }
+
+    /**
+     * Реализация до общего анализатора и однопроходного разбора: словари загружаются для каждой страницы.
+     */
+    private static Map<String, Integer> legacyLemmas(String text) {
+        LuceneMorphology russianLuceneMorphology;
+        try {
+            russianLuceneMorphology = new RussianLuceneMorphology();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        List<String> wordList = Arrays
+                .stream(text.replaceAll("[^а-яА-ЯёЁ\\s]", " ")
+                        .replaceAll("\\s{2,}", " ")
+                        .trim()
+                        .toLowerCase()
+                        .split(" "))
+                .filter(word -> isCorrectWord(russianLuceneMorphology.getMorphInfo(word).toString()))
+                .map(russianLuceneMorphology::getNormalForms)
+                .map(list -> list.get(0))
+                .map(word -> word.replaceAll("ё", "е"))
+                .filter(word -> word.length() > 2)
+                .toList();
+
+        Map<String, Long> wordMap = wordList.stream()
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+
+        return wordMap.entrySet()
+                .stream()
+                .collect(Collectors.toMap(
+                        Map.Entry::getKey,
+                        entry -> Integer.parseInt(String.valueOf(entry.getValue()))));
+    }
+
+    private static boolean isCorrectWord(String word) {
+        return !word.contains("СОЮЗ") && !word.contains("ПРЕДЛ") && !word.contains("МЕЖД");
+    }
+
+    private static String makeText() {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < TEXT_WORDS; i++) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+        }
+        return text.toString();
+    }
+}
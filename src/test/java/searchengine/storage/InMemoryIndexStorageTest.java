@@ -0,0 +1,99 @@
+package searchengine.storage;
+
+import org.junit.Test;
+import searchengine.models.Page;
+import searchengine.models.Site;
+
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InMemoryIndexStorageTest {
+    @Test
+    public void failedGroupLeavesNoPartialWrites() {
+        InMemoryIndexStorage indexStorage = new InMemoryIndexStorage();
+        Site site = new Site();
+        site.setUrl("http://localhost");
+        site.setName("localhost");
+        indexStorage.saveNewGeneration(site);
+
+        indexStorage.storePages(List.of(makePage(site, "/first", "кошка")));
+        int lemmaFrequency = indexStorage.findLemmas("кошка", site.getId()).get(0).getFrequency();
+
+        Page second = makePage(site, "/second", "кошка");
+        Page duplicatePath = makePage(site, "/first", "собака");
+        try {
+            indexStorage.storePages(List.of(second, duplicatePath));
+            fail("Страница с уже сохраненным путем должна отменить запись группы");
+        } catch (IllegalStateException expected) {
+        }
+
+        assertNull(second.getId());
+        assertEquals(1, indexStorage.getPageCount(site.getId()));
+        assertEquals(lemmaFrequency, (int) indexStorage.findLemmas("кошка", site.getId()).get(0).getFrequency());
+        assertTrue(indexStorage.findLemmas("собака", site.getId()).isEmpty());
+        assertEquals(1, indexStorage.findPagesByLemma(
+                indexStorage.findLemmas("кошка", site.getId()).get(0).getId()).size());
+    }
+
+    @Test
+    public void pageMarkedAsDuplicateLosesStoredContent() {
+        InMemoryIndexStorage indexStorage = new InMemoryIndexStorage();
+        Site site = new Site();
+        site.setUrl("http://localhost");
+        site.setName("localhost");
+        indexStorage.saveNewGeneration(site);
+
+        Page page = makePage(site, "/copy", "кошка");
+        indexStorage.storePages(List.of(page));
+        assertTrue(indexStorage.getPageText(page).isPresent());
+
+        page.setDuplicateOf("/original");
+        page.setContext(null);
+        page.setText(null);
+        indexStorage.storePages(List.of(page));
+
+        assertTrue(indexStorage.getPageText(page).isEmpty());
+        assertTrue(indexStorage.getPageHtml(page.getId()).isEmpty());
+        assertTrue(indexStorage.findPagesByLemma(
+                indexStorage.findLemmas("кошка", site.getId()).get(0).getId()).isEmpty());
+    }
+
+    @Test
+    public void pageReplacedByErrorLosesIndexAndContent() {
+        InMemoryIndexStorage indexStorage = new InMemoryIndexStorage();
+        Site site = new Site();
+        site.setUrl("http://localhost");
+        site.setName("localhost");
+        indexStorage.saveNewGeneration(site);
+
+        Page page = makePage(site, "/gone", "кошка");
+        indexStorage.storePages(List.of(page));
+
+        Page errorPage = new Page();
+        errorPage.setId(page.getId());
+        errorPage.setSite(site);
+        errorPage.setPath(page.getPath());
+        errorPage.setCode(404);
+        indexStorage.storePages(List.of(errorPage));
+
+        assertEquals(0, indexStorage.getIndexedPageCount(site.getId()));
+        assertTrue(indexStorage.getPageText(errorPage).isEmpty());
+        assertTrue(indexStorage.findPagesByLemma(
+                indexStorage.findLemmas("кошка", site.getId()).get(0).getId()).isEmpty());
+    }
+
+    private static Page makePage(Site site, String path, String lemma) {
+        Page page = new Page();
+        page.setSite(site);
+        page.setPath(path);
+        page.setCode(200);
+        page.setContext("<p>" + lemma + "</p>");
+        page.setText(lemma);
+        HashMap<String, int[]> lemmas = new HashMap<>();
+        lemmas.put(lemma, new int[]{0});
+        page.setLemmas(lemmas);
+        return page;
+    }
+}